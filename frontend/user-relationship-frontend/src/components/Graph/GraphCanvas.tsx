@@ -49,7 +49,10 @@ export const GraphCanvas: React.FC<GraphCanvasProps> = ({ onNodeSelect, dragging
         age: user.age,
         popularityScore: user.popularityScore,
       },
-      position: positions[index] || { x: Math.random() * 500, y: Math.random() * 500 },
+      position:
+        user.x !== undefined && user.y !== undefined
+          ? { x: user.x, y: user.y }
+          : positions[index] || { x: Math.random() * 500, y: Math.random() * 500 },
       draggable: true,
     }));
     setNodes(newNodes);
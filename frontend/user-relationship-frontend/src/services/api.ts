@@ -1,4 +1,4 @@
-import { User, CreateUserRequest, UpdateUserRequest, GraphResponse } from '../types';
+import { User, CreateUserRequest, UpdateUserRequest, GraphResponse, UserSuggestion } from '../types';
 
 const API_BASE_URL = process.env.REACT_APP_API_URL || 'http://localhost:8080/api';
 
@@ -62,8 +62,15 @@ class UserAPI {
     return response.json();
   }
 
+  async suggestUsers(prefix: string, limit: number = 10): Promise<UserSuggestion[]> {
+    const params = new URLSearchParams({ prefix, limit: String(limit) });
+    const response = await fetch(`${API_BASE_URL}/users/suggest?${params}`);
+    if (!response.ok) throw new Error('Failed to fetch user suggestions');
+    return response.json();
+  }
+
   async getGraphData(): Promise<GraphResponse> {
-    const response = await fetch(`${API_BASE_URL}/graph`);
+    const response = await fetch(`${API_BASE_URL}/graph?layout=true`);
     if (!response.ok) throw new Error('Failed to fetch graph data');
     return response.json();
   }
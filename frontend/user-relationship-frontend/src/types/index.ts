@@ -7,6 +7,9 @@ export interface User {
   friends: string[];
   createdAt: string;
   popularityScore: number;
+  // Server-side layout position, present when the graph is fetched with layout=true
+  x?: number;
+  y?: number;
 }
 
 export interface UserDTO extends User {}
@@ -32,6 +35,12 @@ export interface Relationship {
   userId2: string;
 }
 
+export interface UserSuggestion {
+  id: string;
+  username: string;
+  popularityScore: number;
+}
+
 export interface GraphResponse {
   users: UserDTO[];
   relationships: Relationship[];
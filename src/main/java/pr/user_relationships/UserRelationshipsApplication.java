@@ -2,8 +2,10 @@ package pr.user_relationships;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class UserRelationshipsApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,18 @@
+package pr.user_relationships.admission;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an expensive endpoint. Requests to it are admitted by the
+ * {@link AdmissionLimiter} of the given name, so a burst of them cannot take
+ * all database connections and starve cheap endpoints.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AdmissionControlled {
+
+    String value();
+}
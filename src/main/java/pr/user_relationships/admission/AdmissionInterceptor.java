@@ -0,0 +1,55 @@
+package pr.user_relationships.admission;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import pr.user_relationships.exception.TooManyRequestsException;
+
+/**
+ * Admits requests to {@link AdmissionControlled} handlers through their limiter
+ * and reports each request's latency back to it when the request completes.
+ */
+@Component
+@RequiredArgsConstructor
+public class AdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String LIMITER_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".limiter";
+    private static final String STARTED_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".started";
+
+    private final AdmissionLimiters limiters;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws InterruptedException {
+        if (!limiters.isEnabled() || !(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        AdmissionControlled controlled = handlerMethod.getMethodAnnotation(AdmissionControlled.class);
+        if (controlled == null) {
+            return true;
+        }
+
+        AdmissionLimiter limiter = limiters.get(controlled.value());
+        if (!limiter.tryAcquire()) {
+            throw new TooManyRequestsException(
+                    "Server is busy, please retry later", limiter.retryAfterSeconds());
+        }
+        request.setAttribute(LIMITER_ATTRIBUTE, limiter);
+        request.setAttribute(STARTED_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        AdmissionLimiter limiter = (AdmissionLimiter) request.getAttribute(LIMITER_ATTRIBUTE);
+        if (limiter == null) {
+            return;
+        }
+        long latency = System.nanoTime() - (Long) request.getAttribute(STARTED_ATTRIBUTE);
+        limiter.release(latency, ex != null || response.getStatus() >= 500);
+    }
+}
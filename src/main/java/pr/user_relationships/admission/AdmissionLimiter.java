@@ -0,0 +1,163 @@
+package pr.user_relationships.admission;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive concurrency limit with a short bounded queue.
+ * <p>
+ * The limit follows AIMD: every response slower than the target latency, or
+ * failed, multiplies it by the backoff ratio, and every fast response while
+ * the limit is actually in use grows it by {@code 1/limit}, which is roughly
+ * one slot per round of requests. Requests that find all slots taken wait up
+ * to {@code maxQueueWaitMs} in a queue of at most {@code maxQueue}; the rest
+ * are shed straight away.
+ */
+public class AdmissionLimiter {
+
+    private final String name;
+    private final AdmissionProperties.Limits limits;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejectedQueueFull = new LongAdder();
+    private final LongAdder rejectedQueueTimeout = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private volatile double averageLatencyMs;
+
+    public AdmissionLimiter(String name, AdmissionProperties.Limits limits) {
+        this.name = name;
+        this.limits = limits;
+        this.limit = Math.max(limits.getMinLimit(), Math.min(limits.getInitialLimit(), limits.getMaxLimit()));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Takes a slot, waiting briefly if none is free.
+     *
+     * @return false if the request should be rejected
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                admitted.increment();
+                return true;
+            }
+            if (waiting >= limits.getMaxQueue()) {
+                rejectedQueueFull.increment();
+                return false;
+            }
+
+            waiting++;
+            queued.increment();
+            long started = System.nanoTime();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(limits.getMaxQueueWaitMs());
+            try {
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        rejectedQueueTimeout.increment();
+                        return false;
+                    }
+                    remaining = slotFreed.awaitNanos(remaining);
+                }
+                inFlight++;
+                admitted.increment();
+                return true;
+            } finally {
+                waiting--;
+                queueWaitNanos.add(System.nanoTime() - started);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the slot and feeds the request's outcome into the limit.
+     */
+    public void release(long latencyNanos, boolean failed) {
+        double latencyMs = latencyNanos / 1_000_000.0;
+        lock.lock();
+        try {
+            boolean saturated = inFlight * 2 >= limit;
+            inFlight--;
+
+            if (failed || latencyMs > limits.getTargetLatencyMs()) {
+                limit = Math.max(limits.getMinLimit(), limit * limits.getBackoffRatio());
+            } else if (saturated) {
+                limit = Math.min(limits.getMaxLimit(), limit + 1.0 / limit);
+            }
+            averageLatencyMs = averageLatencyMs == 0 ? latencyMs : averageLatencyMs * 0.9 + latencyMs * 0.1;
+
+            slotFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Suggested client back-off, based on how long it takes to drain the current queue.
+     */
+    public long retryAfterSeconds() {
+        lock.lock();
+        try {
+            double drainMs = averageLatencyMs * (waiting + 1) / Math.max(1, (int) limit);
+            return Math.max(1, (long) Math.ceil(drainMs / 1000));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            long queuedCount = queued.sum();
+            return Stats.builder()
+                    .name(name)
+                    .limit((int) limit)
+                    .inFlight(inFlight)
+                    .waiting(waiting)
+                    .admitted(admitted.sum())
+                    .queued(queuedCount)
+                    .rejectedQueueFull(rejectedQueueFull.sum())
+                    .rejectedQueueTimeout(rejectedQueueTimeout.sum())
+                    .averageQueueWaitMs(queuedCount == 0 ? 0 : queueWaitNanos.sum() / 1_000_000.0 / queuedCount)
+                    .averageLatencyMs(averageLatencyMs)
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Data
+    @Builder
+    public static class Stats {
+        private String name;
+        private int limit;
+        private int inFlight;
+        private int waiting;
+        private long admitted;
+        private long queued;
+        private long rejectedQueueFull;
+        private long rejectedQueueTimeout;
+        private double averageQueueWaitMs;
+        private double averageLatencyMs;
+    }
+}
@@ -0,0 +1,40 @@
+package pr.user_relationships.admission;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * One {@link AdmissionLimiter} per name used in {@link AdmissionControlled}, created on first use.
+ */
+@Component
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class AdmissionLimiters {
+
+    private final AdmissionProperties properties;
+    private final Map<String, AdmissionLimiter> limiters = new ConcurrentHashMap<>();
+
+    public AdmissionLimiters(AdmissionProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public AdmissionLimiter get(String name) {
+        return limiters.computeIfAbsent(name, key -> new AdmissionLimiter(key, properties.limitsFor(key)));
+    }
+
+    public List<AdmissionLimiter.Stats> stats() {
+        return limiters.values().stream()
+                .map(AdmissionLimiter::stats)
+                .sorted(Comparator.comparing(AdmissionLimiter.Stats::getName))
+                .collect(Collectors.toList());
+    }
+}
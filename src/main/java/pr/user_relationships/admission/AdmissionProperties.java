@@ -0,0 +1,38 @@
+package pr.user_relationships.admission;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties("app.admission")
+public class AdmissionProperties {
+
+    private boolean enabled = true;
+
+    // Used for every limiter without its own entry in limiters
+    private Limits defaults = new Limits();
+
+    private Map<String, Limits> limiters = new HashMap<>();
+
+    public Limits limitsFor(String name) {
+        return limiters.getOrDefault(name, defaults);
+    }
+
+    @Data
+    public static class Limits {
+        private int initialLimit = 8;
+        private int minLimit = 2;
+        private int maxLimit = 64;
+
+        // Requests waiting for a slot beyond this are rejected immediately
+        private int maxQueue = 16;
+        private long maxQueueWaitMs = 250;
+
+        // Responses slower than this count as congestion and shrink the limit
+        private long targetLatencyMs = 500;
+        private double backoffRatio = 0.9;
+    }
+}
@@ -0,0 +1,125 @@
+package pr.user_relationships.analytics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pr.user_relationships.dto.GraphStats;
+import pr.user_relationships.repository.UserRepository;
+import pr.user_relationships.scoring.FriendGraph;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Serves {@link GraphStats}: the counters from {@link GraphCounters} as they are
+ * now, plus triangle and clustering metrics from the last analytics run. The
+ * run is repeated on a schedule whenever the counters changed since.
+ */
+@Component
+@Slf4j
+public class GraphAnalytics {
+
+    private final GraphCounters counters;
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private volatile Metrics metrics;
+
+    public GraphAnalytics(GraphCounters counters, UserRepository userRepository,
+                          PlatformTransactionManager transactionManager) {
+        this.counters = counters;
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public GraphStats getStats() {
+        GraphCounters.Snapshot snapshot = counters.snapshot();
+        Metrics current = metrics;
+        if (current == null) {
+            current = recompute();
+        }
+
+        return GraphStats.builder()
+                .userCount(snapshot.userCount)
+                .friendshipCount(snapshot.friendshipCount)
+                .averageDegree(snapshot.userCount == 0 ? 0 : 2.0 * snapshot.friendshipCount / snapshot.userCount)
+                .maxDegree(snapshot.maxDegree)
+                .degreeHistogram(snapshot.degreeHistogram)
+                .hobbyFrequency(snapshot.hobbyFrequency)
+                .triangleCount(current.triangles)
+                .globalClusteringCoefficient(current.globalClustering)
+                .averageLocalClusteringCoefficient(current.averageLocalClustering)
+                .analyticsComputedAt(current.computedAt)
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.recompute-interval-ms:60000}",
+            initialDelayString = "${app.analytics.recompute-interval-ms:60000}")
+    public void refresh() {
+        Metrics current = metrics;
+        if (current == null || current.version != counters.getVersion()) {
+            recompute();
+        }
+    }
+
+    synchronized Metrics recompute() {
+        long version = counters.getVersion();
+        Metrics current = metrics;
+        // Another request just finished the same run
+        if (current != null && current.version == version) {
+            return current;
+        }
+
+        long started = System.nanoTime();
+        FriendGraph graph = readOnlyTransaction.execute(status ->
+                FriendGraph.build(userRepository.findAllIds(), userRepository.findAllFriendships()));
+        Metrics computed = compute(graph, pool, version);
+        metrics = computed;
+        log.info("Computed graph analytics for {} users and {} friendships in {} ms: {} triangles",
+                graph.size(), graph.edgeCount(), (System.nanoTime() - started) / 1_000_000, computed.triangles);
+        return computed;
+    }
+
+    static Metrics compute(FriendGraph graph, ForkJoinPool pool, long version) {
+        TriangleCounter.Result triangles = TriangleCounter.count(graph, pool);
+
+        // Connected triples: pairs of friends of the same user
+        double triples = 0;
+        double localSum = 0;
+        for (int v = 0; v < graph.size(); v++) {
+            long degree = graph.degree(v);
+            double pairs = degree * (degree - 1) / 2.0;
+            triples += pairs;
+            if (degree >= 2) {
+                localSum += triangles.trianglesPerNode[v] / pairs;
+            }
+        }
+
+        return new Metrics(version, triangles.triangles,
+                triples == 0 ? 0 : 3 * triangles.triangles / triples,
+                graph.size() == 0 ? 0 : localSum / graph.size(),
+                LocalDateTime.now());
+    }
+
+    static final class Metrics {
+        final long version;
+        final long triangles;
+        final double globalClustering;
+        // Users with fewer than two friends count as 0
+        final double averageLocalClustering;
+        final LocalDateTime computedAt;
+
+        private Metrics(long version, long triangles, double globalClustering, double averageLocalClustering,
+                        LocalDateTime computedAt) {
+            this.version = version;
+            this.triangles = triangles;
+            this.globalClustering = globalClustering;
+            this.averageLocalClustering = averageLocalClustering;
+            this.computedAt = computedAt;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package pr.user_relationships.analytics;
+
+import org.springframework.stereotype.Component;
+import pr.user_relationships.entity.User;
+import pr.user_relationships.index.UserIndex;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cheap graph statistics kept up to date incrementally: every change only
+ * moves the affected users between degree histogram buckets and adjusts the
+ * hobby counts. Fed by {@link pr.user_relationships.index.IndexMaintainer}
+ * like the other indexes.
+ */
+@Component
+public class GraphCounters implements UserIndex {
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final TreeMap<Integer, Integer> degreeHistogram = new TreeMap<>();
+    private final Map<String, Integer> hobbyCounts = new HashMap<>();
+    private long degreeSum;
+    private long version;
+
+    @Override
+    public synchronized void rebuild(Collection<User> users) {
+        entries.clear();
+        degreeHistogram.clear();
+        hobbyCounts.clear();
+        degreeSum = 0;
+        users.forEach(this::put);
+        version++;
+    }
+
+    @Override
+    public synchronized void upsert(Collection<User> users) {
+        users.forEach(this::put);
+        version++;
+    }
+
+    @Override
+    public synchronized void remove(Collection<String> userIds) {
+        userIds.forEach(this::drop);
+        version++;
+    }
+
+    /**
+     * Incremented on every change, so consumers can tell whether derived metrics are outdated.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized Snapshot snapshot() {
+        Map<String, Integer> hobbies = new LinkedHashMap<>();
+        hobbyCounts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .forEach(entry -> hobbies.put(entry.getKey(), entry.getValue()));
+        return new Snapshot(entries.size(), degreeSum / 2,
+                degreeHistogram.isEmpty() ? 0 : degreeHistogram.lastKey(),
+                new LinkedHashMap<>(degreeHistogram), hobbies);
+    }
+
+    private void put(User user) {
+        drop(user.getId());
+        Entry entry = new Entry(user.getFriends().size(), List.copyOf(new LinkedHashSet<>(user.getHobbies())));
+        entries.put(user.getId(), entry);
+        degreeHistogram.merge(entry.degree, 1, Integer::sum);
+        degreeSum += entry.degree;
+        entry.hobbies.forEach(hobby -> hobbyCounts.merge(hobby, 1, Integer::sum));
+    }
+
+    private void drop(String userId) {
+        Entry previous = entries.remove(userId);
+        if (previous == null) {
+            return;
+        }
+        decrement(degreeHistogram, previous.degree);
+        degreeSum -= previous.degree;
+        previous.hobbies.forEach(hobby -> decrement(hobbyCounts, hobby));
+    }
+
+    private static <K> void decrement(Map<K, Integer> counts, K key) {
+        counts.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+    }
+
+    private static final class Entry {
+        private final int degree;
+        private final List<String> hobbies;
+
+        private Entry(int degree, List<String> hobbies) {
+            this.degree = degree;
+            this.hobbies = hobbies;
+        }
+    }
+
+    public static final class Snapshot {
+        final int userCount;
+        final long friendshipCount;
+        final int maxDegree;
+        final Map<Integer, Integer> degreeHistogram;
+        final Map<String, Integer> hobbyFrequency;
+
+        private Snapshot(int userCount, long friendshipCount, int maxDegree,
+                         Map<Integer, Integer> degreeHistogram, Map<String, Integer> hobbyFrequency) {
+            this.userCount = userCount;
+            this.friendshipCount = friendshipCount;
+            this.maxDegree = maxDegree;
+            this.degreeHistogram = degreeHistogram;
+            this.hobbyFrequency = hobbyFrequency;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package pr.user_relationships.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import pr.user_relationships.config.ReadWriteRoutingDataSource;
+import pr.user_relationships.dto.GraphResponse;
+import pr.user_relationships.dto.UserSearchCriteria;
+import pr.user_relationships.entity.User;
+import pr.user_relationships.index.UserIndex;
+import pr.user_relationships.service.UserService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized {@code /api/graph} responses, keyed by graph version.
+ * <p>
+ * Every committed change bumps the version (the cache is registered as a
+ * {@link UserIndex}, so it is notified for local and remote changes alike).
+ * Concurrent requests for the same version share a single computation, and
+ * the JSON is serialized and gzipped once per version.
+ * <p>
+ * The graph is read in a read-only transaction routed to the primary, so a
+ * lagging replica cannot hand back the graph from before the change that
+ * bumped the version.
+ */
+@Component
+@Slf4j
+public class GraphResponseCache implements UserIndex {
+
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Key, CompletableFuture<CachedGraph>> graphs = new ConcurrentHashMap<>();
+
+    public GraphResponseCache(UserService userService, ObjectMapper objectMapper) {
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+    }
+
+    public CachedGraph get(boolean withLayout) {
+        Key key = new Key(version.get(), withLayout);
+        CompletableFuture<CachedGraph> existing = graphs.get(key);
+        if (existing == null) {
+            CompletableFuture<CachedGraph> ours = new CompletableFuture<>();
+            existing = graphs.putIfAbsent(key, ours);
+            if (existing == null) {
+                return compute(key, ours);
+            }
+        }
+        try {
+            return existing.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    private CachedGraph compute(Key key, CompletableFuture<CachedGraph> future) {
+        CachedGraph graph;
+        try {
+            GraphResponse response = ReadWriteRoutingDataSource.onPrimary(
+                    () -> userService.getGraphData(new UserSearchCriteria(), key.withLayout));
+            byte[] json = objectMapper.writeValueAsBytes(response);
+            graph = new CachedGraph(key.version, json, gzip(json), etag(json));
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Let the next request try again instead of replaying the failure
+            graphs.remove(key, future);
+            RuntimeException failure = e instanceof RuntimeException runtime
+                    ? runtime : new IllegalStateException("Failed to serialize graph", e);
+            future.completeExceptionally(failure);
+            throw failure;
+        }
+        future.complete(graph);
+
+        long current = version.get();
+        graphs.keySet().removeIf(k -> k.version < current);
+        log.debug("Cached graph version {} ({} bytes, {} gzipped)", key.version, graph.json.length, graph.gzipped.length);
+        return graph;
+    }
+
+    private void invalidate() {
+        long current = version.incrementAndGet();
+        graphs.keySet().removeIf(k -> k.version < current);
+    }
+
+    @Override
+    public void rebuild(Collection<User> users) {
+        invalidate();
+    }
+
+    @Override
+    public void upsert(Collection<User> users) {
+        invalidate();
+    }
+
+    @Override
+    public void remove(Collection<String> userIds) {
+        invalidate();
+    }
+
+    // Users in the response carry their score
+    @Override
+    public void refreshScores(ToDoubleFunction<String> scores) {
+        invalidate();
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // Derived from the content rather than the version, so every instance hands out the same tag
+    private static String etag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Key(long version, boolean withLayout) {
+    }
+
+    @Getter
+    public static final class CachedGraph {
+        private final long version;
+        private final byte[] json;
+        private final byte[] gzipped;
+        private final String etag;
+
+        private CachedGraph(long version, byte[] json, byte[] gzipped, String etag) {
+            this.version = version;
+            this.json = json;
+            this.gzipped = gzipped;
+            this.etag = etag;
+        }
+
+        /**
+         * Strong entity tag of the given representation.
+         */
+        public String etag(boolean gzip) {
+            return "\"" + etag + (gzip ? "-gzip" : "") + "\"";
+        }
+
+        /**
+         * Whether an {@code If-None-Match} header names this graph in either representation.
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || tag.equals(etag(false)) || tag.equals(etag(true))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package pr.user_relationships.cluster;
+
+import lombok.Value;
+import pr.user_relationships.event.RemoteUserGraphChangedEvent;
+import pr.user_relationships.event.UserGraphChangedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Wire format of a change notification:
+ * {@code nodeId;seq;TYPE;userId;otherUserId;affectedId,affectedId,...}.
+ * Changes too large for a NOTIFY payload are sent as {@code nodeId;seq;RELOAD},
+ * which makes receivers rebuild from the database.
+ */
+@Value
+public class ClusterChangeMessage {
+
+    // PostgreSQL rejects NOTIFY payloads of 8000 bytes or more
+    static final int MAX_PAYLOAD_BYTES = 7999;
+
+    private static final String RELOAD = "RELOAD";
+
+    String nodeId;
+    long seq;
+
+    // null for a reload marker
+    UserGraphChangedEvent.Type type;
+    String userId;
+    String otherUserId;
+    List<String> affectedUserIds;
+
+    public static ClusterChangeMessage of(String nodeId, long seq, UserGraphChangedEvent event) {
+        return new ClusterChangeMessage(nodeId, seq, event.getType(), event.getUserId(),
+                event.getOtherUserId(),
+                event.getAffectedUserIds() == null ? List.of() : List.copyOf(event.getAffectedUserIds()));
+    }
+
+    public static ClusterChangeMessage reload(String nodeId, long seq) {
+        return new ClusterChangeMessage(nodeId, seq, null, null, null, List.of());
+    }
+
+    public boolean isReload() {
+        return type == null;
+    }
+
+    public String encode() {
+        if (isReload()) {
+            return nodeId + ";" + seq + ";" + RELOAD;
+        }
+        String payload = nodeId + ";" + seq + ";" + type + ";" + userId + ";"
+                + (otherUserId == null ? "" : otherUserId) + ";"
+                + String.join(",", affectedUserIds);
+        if (payload.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            return reload(nodeId, seq).encode();
+        }
+        return payload;
+    }
+
+    public static ClusterChangeMessage decode(String payload) {
+        String[] parts = payload.split(";", -1);
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Malformed change message: " + payload);
+        }
+        String nodeId = parts[0];
+        long seq = Long.parseLong(parts[1]);
+        if (RELOAD.equals(parts[2])) {
+            return reload(nodeId, seq);
+        }
+        if (parts.length != 6) {
+            throw new IllegalArgumentException("Malformed change message: " + payload);
+        }
+        List<String> affected = parts[5].isEmpty() ? List.of() : Arrays.asList(parts[5].split(","));
+        return new ClusterChangeMessage(nodeId, seq, UserGraphChangedEvent.Type.valueOf(parts[2]),
+                parts[3], parts[4].isEmpty() ? null : parts[4], List.copyOf(affected));
+    }
+
+    public RemoteUserGraphChangedEvent toEvent() {
+        return new RemoteUserGraphChangedEvent(nodeId, type, userId, otherUserId, affectedUserIds);
+    }
+}
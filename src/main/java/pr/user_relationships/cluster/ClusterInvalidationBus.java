@@ -0,0 +1,284 @@
+package pr.user_relationships.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import pr.user_relationships.event.RemoteUserGraphChangedEvent;
+import pr.user_relationships.event.UserGraphChangedEvent;
+import pr.user_relationships.index.IndexMaintainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the in-memory state of several service instances in sync through
+ * PostgreSQL LISTEN/NOTIFY, without an external broker.
+ * <p>
+ * After each local commit the change is queued for a single sender thread,
+ * which sends it on a dedicated connection, tagged with this node's id and a
+ * per-node sequence number. Committing threads never wait for the round trip.
+ * If the queue is full, the queued changes are replaced by one reload marker.
+ * Every node listens on the channel and republishes foreign changes as
+ * {@link RemoteUserGraphChangedEvent}s. A skipped sequence number, a reload
+ * marker or a lost listener connection means changes may have been missed, so
+ * the indexes are rebuilt from the database.
+ * <p>
+ * Nodes that have been silent for {@code node-timeout} are forgotten, so the
+ * ids of stopped nodes do not pile up. A forgotten node's next message starts
+ * its sequence afresh, like a node seen for the first time.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.cluster.invalidation", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ClusterInvalidationProperties.class)
+@Slf4j
+public class ClusterInvalidationBus implements SmartLifecycle {
+
+    private final ClusterInvalidationProperties properties;
+    private final DataSourceProperties dataSourceProperties;
+    private final IndexMaintainer indexMaintainer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Confined to the listener thread
+    private final Map<String, Peer> peers = new HashMap<>();
+
+    private final BlockingQueue<UserGraphChangedEvent> outgoing;
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+
+    // Confined to the sender thread
+    private long nextSeq = 1;
+    private Connection senderConnection;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+    private Thread senderThread;
+
+    public ClusterInvalidationBus(ClusterInvalidationProperties properties,
+                                  DataSourceProperties dataSourceProperties,
+                                  IndexMaintainer indexMaintainer,
+                                  ApplicationEventPublisher eventPublisher,
+                                  PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.dataSourceProperties = dataSourceProperties;
+        this.indexMaintainer = indexMaintainer;
+        this.eventPublisher = eventPublisher;
+        // Remote changes must be re-read from the primary, never from a lagging replica
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.outgoing = new LinkedBlockingQueue<>(properties.getSendQueueCapacity());
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @TransactionalEventListener
+    public void onUserGraphChanged(UserGraphChangedEvent event) {
+        if (event instanceof RemoteUserGraphChangedEvent) {
+            return;
+        }
+        if (!outgoing.offer(event)) {
+            overflowed.set(true);
+        }
+    }
+
+    /**
+     * Takes the next message to send, numbered in sending order. Called by the
+     * sender thread only.
+     *
+     * @return null if nothing was queued within the timeout
+     */
+    ClusterChangeMessage nextMessage(long timeoutMs) throws InterruptedException {
+        if (overflowed.getAndSet(false)) {
+            // Everything queued so far is committed, so the receivers' rebuild covers it
+            outgoing.clear();
+            return ClusterChangeMessage.reload(nodeId, nextSeq++);
+        }
+        UserGraphChangedEvent event = outgoing.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        return event == null ? null : ClusterChangeMessage.of(nodeId, nextSeq++, event);
+    }
+
+    private void sendQueued() {
+        // Drains what is left after a stop, so changes committed before it still go out
+        while (running || !outgoing.isEmpty()) {
+            try {
+                ClusterChangeMessage message = nextMessage(properties.getPollTimeoutMs());
+                if (message != null) {
+                    send(message);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        closeQuietly(senderConnection);
+        senderConnection = null;
+    }
+
+    // The number is used up even if the send fails, so receivers see the gap
+    private void send(ClusterChangeMessage message) {
+        try {
+            if (senderConnection == null || senderConnection.isClosed()) {
+                senderConnection = connect();
+            }
+            try (PreparedStatement statement = senderConnection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                statement.setString(1, properties.getChannel());
+                statement.setString(2, message.encode());
+                statement.execute();
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to send change notification {}: {}", message.getSeq(), e.getMessage());
+            closeQuietly(senderConnection);
+            senderConnection = null;
+        }
+    }
+
+    void handle(String payload) {
+        ClusterChangeMessage message;
+        try {
+            message = ClusterChangeMessage.decode(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed change notification: {}", payload);
+            return;
+        }
+        if (nodeId.equals(message.getNodeId())) {
+            return;
+        }
+
+        Peer peer = peers.computeIfAbsent(message.getNodeId(), key -> new Peer());
+        long previous = peer.lastSeq;
+        peer.lastSeq = message.getSeq();
+        peer.lastSeenNanos = System.nanoTime();
+        if (previous != 0 && message.getSeq() != previous + 1) {
+            log.warn("Missed change notifications {}..{} from node {}, reloading",
+                    previous + 1, message.getSeq() - 1, message.getNodeId());
+            reload();
+        } else if (message.isReload()) {
+            reload();
+        } else {
+            transactionTemplate.executeWithoutResult(status -> eventPublisher.publishEvent(message.toEvent()));
+        }
+    }
+
+    void evictSilentNodes(long nowNanos) {
+        long timeout = properties.getNodeTimeout().toNanos();
+        peers.values().removeIf(peer -> nowNanos - peer.lastSeenNanos > timeout);
+    }
+
+    int knownNodeCount() {
+        return peers.size();
+    }
+
+    private void reload() {
+        indexMaintainer.rebuildAll();
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = connect()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN \"" + properties.getChannel() + "\"");
+                }
+                if (reconnecting) {
+                    // Anything sent while we were disconnected is lost
+                    log.info("Cluster invalidation listener reconnected, reloading");
+                    reload();
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(properties.getPollTimeoutMs());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            handle(notification.getParameter());
+                        }
+                    }
+                    evictSilentNodes(System.nanoTime());
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cluster invalidation listener failed, retrying in {} ms: {}",
+                        properties.getReconnectDelayMs(), e.getMessage());
+                reconnecting = true;
+                try {
+                    Thread.sleep(properties.getReconnectDelayMs());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+        connection.setAutoCommit(true);
+        return connection;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // already broken
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        listenerThread = new Thread(this::listen, "cluster-invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+        senderThread = new Thread(this::sendQueued, "cluster-invalidation-sender");
+        senderThread.setDaemon(true);
+        senderThread.start();
+        log.info("Cluster invalidation bus started as node {} on channel {}", nodeId, properties.getChannel());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+        // The sender thread closes its own connection once the queue is drained
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static final class Peer {
+        // Sequence numbers start at 1, so 0 means none seen yet
+        private long lastSeq;
+        private long lastSeenNanos;
+    }
+}
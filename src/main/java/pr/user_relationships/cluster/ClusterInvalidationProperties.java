@@ -0,0 +1,26 @@
+package pr.user_relationships.cluster;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("app.cluster.invalidation")
+public class ClusterInvalidationProperties {
+
+    private boolean enabled = false;
+
+    private String channel = "user_graph_changes";
+
+    // How long the listener blocks waiting for notifications before checking for shutdown
+    private int pollTimeoutMs = 500;
+
+    private long reconnectDelayMs = 5000;
+
+    // Changes waiting for the sender thread; on overflow they are replaced by one reload marker
+    private int sendQueueCapacity = 10_000;
+
+    // Nodes silent for longer are forgotten
+    private Duration nodeTimeout = Duration.ofHours(1);
+}
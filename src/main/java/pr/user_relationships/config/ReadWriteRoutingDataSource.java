@@ -0,0 +1,71 @@
+package pr.user_relationships.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Sends connections of read-only transactions to the replica and everything
+ * else to the primary. Must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} so the
+ * connection is only fetched once the transaction's read-only flag is known.
+ * <p>
+ * Reads that must see every committed change run through {@link #onPrimary},
+ * which keeps them read-only but routes them to the primary.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = ThreadLocal.withInitial(() -> false);
+
+    private volatile boolean replicaAvailable = true;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentRoute();
+    }
+
+    public Route currentRoute() {
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        return readOnly && replicaAvailable && !PRIMARY_FORCED.get() ? Route.REPLICA : Route.PRIMARY;
+    }
+
+    /**
+     * Runs the action with every connection fetched on this thread taken from
+     * the primary, read-only transactions included.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        boolean previous = PRIMARY_FORCED.get();
+        PRIMARY_FORCED.set(true);
+        try {
+            return action.get();
+        } finally {
+            PRIMARY_FORCED.set(previous);
+        }
+    }
+
+    public static boolean isPrimaryForced() {
+        return PRIMARY_FORCED.get();
+    }
+
+    public boolean isReplicaAvailable() {
+        return replicaAvailable;
+    }
+
+    public void setReplicaAvailable(boolean replicaAvailable) {
+        this.replicaAvailable = replicaAvailable;
+    }
+}
@@ -0,0 +1,49 @@
+package pr.user_relationships.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Periodically measures the replica's replay lag and takes it out of the read
+ * rotation while it is unreachable or too far behind.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate replica;
+    private final ReadWriteRoutingDataSource routingDataSource;
+    private final ReplicaProperties properties;
+
+    public ReplicaLagMonitor(DataSource replica, ReadWriteRoutingDataSource routingDataSource,
+                             ReplicaProperties properties) {
+        this.replica = new JdbcTemplate(replica);
+        this.routingDataSource = routingDataSource;
+        this.properties = properties;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval-ms:2000}")
+    public void checkLag() {
+        boolean available;
+        try {
+            Double lagSeconds = replica.queryForObject(properties.getLagQuery(), Double.class);
+            available = lagSeconds != null && lagSeconds * 1000 <= properties.getMaxLag().toMillis();
+            if (!available && routingDataSource.isReplicaAvailable()) {
+                log.warn("Replica lag {}s exceeds {}, routing reads to the primary",
+                        lagSeconds, properties.getMaxLag());
+            }
+        } catch (RuntimeException e) {
+            available = false;
+            if (routingDataSource.isReplicaAvailable()) {
+                log.warn("Replica lag check failed, routing reads to the primary: {}", e.getMessage());
+            }
+        }
+
+        if (available && !routingDataSource.isReplicaAvailable()) {
+            log.info("Replica caught up, routing reads to the replica again");
+        }
+        routingDataSource.setReplicaAvailable(available);
+    }
+}
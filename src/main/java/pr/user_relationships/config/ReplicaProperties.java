@@ -0,0 +1,29 @@
+package pr.user_relationships.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Optional read replica. When {@code app.datasource.replica.url} is set,
+ * read-only transactions are routed to it while its replication lag stays
+ * below {@link #maxLag}.
+ */
+@Data
+@ConfigurationProperties("app.datasource.replica")
+public class ReplicaProperties {
+
+    private String url;
+    private String username;
+    private String password;
+
+    private int maximumPoolSize = 10;
+
+    // Reads fall back to the primary while the replica is further behind than this
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    // Replay lag in seconds; 0 when the replica has replayed everything it received
+    private String lagQuery = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+}
@@ -0,0 +1,24 @@
+package pr.user_relationships.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import pr.user_relationships.admission.AdmissionLimiter;
+import pr.user_relationships.admission.AdmissionLimiters;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdmissionStatsController {
+
+    private final AdmissionLimiters admissionLimiters;
+
+    @GetMapping("/admission")
+    public ResponseEntity<List<AdmissionLimiter.Stats>> getAdmissionStats() {
+        return ResponseEntity.ok(admissionLimiters.stats());
+    }
+}
@@ -0,0 +1,57 @@
+package pr.user_relationships.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import pr.user_relationships.dto.ExportJobStatus;
+import pr.user_relationships.dto.ExportRequest;
+import pr.user_relationships.export.ExportCompression;
+import pr.user_relationships.export.GraphExportService;
+
+import java.net.URI;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/exports")
+@RequiredArgsConstructor
+public class ExportController {
+
+    private final GraphExportService graphExportService;
+
+    @PostMapping
+    public ResponseEntity<ExportJobStatus> startExport(@Valid @RequestBody ExportRequest request) {
+        ExportCompression compression = request.getCompression() != null
+                ? request.getCompression()
+                : ExportCompression.NONE;
+        ExportJobStatus job = graphExportService.start(request.getFormat(), compression);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/exports/" + job.getId()))
+                .body(job);
+    }
+
+    @GetMapping
+    public ResponseEntity<List<ExportJobStatus>> getExports() {
+        return ResponseEntity.ok(graphExportService.getJobs());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ExportJobStatus> getExport(@PathVariable String id) {
+        return ResponseEntity.ok(graphExportService.getStatus(id));
+    }
+
+    @GetMapping("/{id}/file")
+    public ResponseEntity<Resource> downloadExport(@PathVariable String id) {
+        GraphExportService.ExportFile file = graphExportService.getFile(id);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(file.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(file.fileName()).build().toString())
+                .body(new FileSystemResource(file.path()));
+    }
+}
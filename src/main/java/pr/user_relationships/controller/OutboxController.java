@@ -0,0 +1,52 @@
+package pr.user_relationships.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import pr.user_relationships.dto.ChangeFeedResponse;
+import pr.user_relationships.exception.BadRequestException;
+import pr.user_relationships.outbox.ChangeRecord;
+import pr.user_relationships.outbox.Outbox;
+import pr.user_relationships.outbox.OutboxPublisher;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/outbox")
+@ConditionalOnProperty(prefix = "app.outbox", name = "enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class OutboxController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final Outbox outbox;
+    private final OutboxPublisher outboxPublisher;
+
+    @GetMapping
+    public ResponseEntity<OutboxPublisher.Status> getStatus() {
+        return ResponseEntity.ok(outboxPublisher.status());
+    }
+
+    @GetMapping("/changes")
+    public ResponseEntity<ChangeFeedResponse> getChanges(
+            @RequestParam(defaultValue = "0") long fromOffset,
+            @RequestParam(defaultValue = "100") int limit) {
+        List<ChangeRecord> records;
+        try {
+            records = outbox.read(fromOffset, Math.max(1, Math.min(limit, MAX_LIMIT)));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        long nextOffset = records.isEmpty() ? fromOffset : records.get(records.size() - 1).getNextOffset();
+        return ResponseEntity.ok(ChangeFeedResponse.builder()
+                .records(records)
+                .nextOffset(nextOffset)
+                .build());
+    }
+
+    @PostMapping("/replay")
+    public ResponseEntity<OutboxPublisher.Status> replay(@RequestParam long fromOffset) {
+        return ResponseEntity.ok(outboxPublisher.replayFrom(fromOffset));
+    }
+}
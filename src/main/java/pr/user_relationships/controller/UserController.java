@@ -3,13 +3,24 @@ package pr.user_relationships.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.apache.coyote.BadRequestException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import pr.user_relationships.admission.AdmissionControlled;
+import pr.user_relationships.analytics.GraphAnalytics;
+import pr.user_relationships.cache.GraphResponseCache;
+import pr.user_relationships.dto.BatchGetRequest;
+import pr.user_relationships.dto.BatchGetResponse;
 import pr.user_relationships.dto.CreateUserRequest;
-import pr.user_relationships.dto.GraphResponse;
+import pr.user_relationships.dto.GraphStats;
 import pr.user_relationships.dto.UpdateUserRequest;
 import pr.user_relationships.dto.UserDTO;
+import pr.user_relationships.dto.UserSearchCriteria;
+import pr.user_relationships.dto.UserProfile;
+import pr.user_relationships.dto.UserSuggestion;
+import pr.user_relationships.profile.UserProfileService;
 import pr.user_relationships.service.UserService;
 import pr.user_relationships.dto.LinkRequest;
 
@@ -21,17 +32,46 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final GraphResponseCache graphResponseCache;
+    private final GraphAnalytics graphAnalytics;
+    private final UserProfileService userProfileService;
 
     @GetMapping("/users")
+    @AdmissionControlled("users")
     public ResponseEntity<List<UserDTO>> getAllUsers() {
         return ResponseEntity.ok(userService.getAllUsers());
     }
 
+    @GetMapping("/users/search")
+    @AdmissionControlled("search")
+    public ResponseEntity<List<UserDTO>> searchUsers(UserSearchCriteria criteria) {
+        return ResponseEntity.ok(userService.searchUsers(criteria));
+    }
+
+    @GetMapping("/users/suggest")
+    public ResponseEntity<List<UserSuggestion>> suggestUsers(
+            @RequestParam(defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(userService.suggestUsers(prefix, limit));
+    }
+
+    @PostMapping("/users:batchGet")
+    @AdmissionControlled("batch")
+    public ResponseEntity<BatchGetResponse> batchGetUsers(@Valid @RequestBody BatchGetRequest request) {
+        return ResponseEntity.ok(userService.batchGetUsers(request.getIds()));
+    }
+
     @GetMapping("/users/{id}")
     public ResponseEntity<UserDTO> getUserById(@PathVariable String id) {
         return ResponseEntity.ok(userService.getUserById(id));
     }
 
+    @GetMapping("/users/{id}/profile")
+    @AdmissionControlled("profile")
+    public ResponseEntity<UserProfile> getUserProfile(@PathVariable String id) {
+        return ResponseEntity.ok(userProfileService.getProfile(id));
+    }
+
     @PostMapping("/users")
     public ResponseEntity<UserDTO> createUser(@Valid @RequestBody CreateUserRequest request) {
         UserDTO createdUser = userService.createUser(request);
@@ -46,8 +86,10 @@ public class UserController {
     }
 
     @DeleteMapping("/users/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable String id) {
-        userService.deleteUser(id);
+    public ResponseEntity<Void> deleteUser(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "false") boolean cascade) {
+        userService.deleteUser(id, cascade);
         return ResponseEntity.noContent().build();
     }
 
@@ -66,7 +108,39 @@ public class UserController {
     }
 
     @GetMapping("/graph")
-    public ResponseEntity<GraphResponse> getGraphData() {
-        return ResponseEntity.ok(userService.getGraphData());
+    @AdmissionControlled("graph")
+    public ResponseEntity<?> getGraphData(
+            UserSearchCriteria filter,
+            @RequestParam(defaultValue = "false") boolean layout,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (!filter.isEmpty()) {
+            return ResponseEntity.ok(userService.getGraphData(filter, layout));
+        }
+
+        // The full graph is served from pre-serialized bytes shared by all concurrent requests
+        GraphResponseCache.CachedGraph graph = graphResponseCache.get(layout);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        if (graph.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(graph.etag(gzip))
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(graph.etag(gzip))
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(graph.getGzipped());
+        }
+        return response.body(graph.getJson());
+    }
+
+    @GetMapping("/graph/stats")
+    @AdmissionControlled("stats")
+    public ResponseEntity<GraphStats> getGraphStats() {
+        return ResponseEntity.ok(graphAnalytics.getStats());
     }
 }
@@ -0,0 +1,18 @@
+package pr.user_relationships.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchGetRequest {
+    @NotEmpty(message = "At least one id is required")
+    @Size(max = 5000, message = "At most 5000 ids per request")
+    private List<String> ids;
+}
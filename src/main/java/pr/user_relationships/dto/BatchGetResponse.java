@@ -0,0 +1,18 @@
+package pr.user_relationships.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchGetResponse {
+    // In the order of the requested ids, each user once
+    private List<UserDTO> users;
+    private List<String> missingIds;
+}
@@ -0,0 +1,19 @@
+package pr.user_relationships.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pr.user_relationships.outbox.ChangeRecord;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChangeFeedResponse {
+    private List<ChangeRecord> records;
+    // Offset to request next; equals the requested offset when no new records exist
+    private long nextOffset;
+}
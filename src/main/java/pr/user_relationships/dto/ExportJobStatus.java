@@ -0,0 +1,28 @@
+package pr.user_relationships.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExportJobStatus {
+    private String id;
+    private String format;
+    private String compression;
+    // QUEUED, RUNNING, COMPLETED or FAILED
+    private String status;
+    private long usersWritten;
+    private long edgesWritten;
+    private long bytesWritten;
+    // 0..1 based on table size estimates; null while the size is unknown
+    private Double progress;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
@@ -0,0 +1,19 @@
+package pr.user_relationships.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pr.user_relationships.export.ExportCompression;
+import pr.user_relationships.export.ExportFormat;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportRequest {
+
+    @NotNull(message = "Format is required")
+    private ExportFormat format;
+
+    private ExportCompression compression = ExportCompression.NONE;
+}
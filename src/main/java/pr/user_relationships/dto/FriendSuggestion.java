@@ -0,0 +1,17 @@
+package pr.user_relationships.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FriendSuggestion {
+    private String id;
+    private String username;
+    private int mutualFriends;
+    private int sharedHobbies;
+}
@@ -0,0 +1,31 @@
+package pr.user_relationships.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GraphStats {
+    // Maintained on every change
+    private int userCount;
+    private long friendshipCount;
+    private double averageDegree;
+    private int maxDegree;
+    // degree -> number of users with that many friends
+    private Map<Integer, Integer> degreeHistogram;
+    // hobby -> number of users, most common first
+    private Map<String, Integer> hobbyFrequency;
+
+    // Recomputed periodically, as of analyticsComputedAt
+    private long triangleCount;
+    private double globalClusteringCoefficient;
+    private double averageLocalClusteringCoefficient;
+    private LocalDateTime analyticsComputedAt;
+}
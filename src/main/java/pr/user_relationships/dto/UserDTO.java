@@ -1,5 +1,6 @@
 package pr.user_relationships.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -30,4 +31,11 @@ public class UserDTO {
     private List<String> friends;
     private LocalDateTime createdAt;
     private Double popularityScore;
+
+    // Layout coordinates, only present on /api/graph?layout=true
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double x;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double y;
 }
@@ -0,0 +1,24 @@
+package pr.user_relationships.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserProfile {
+    private UserDTO user;
+    private List<UserSuggestion> friends;
+    // friend id -> number of friends the user and that friend have in common
+    private Map<String, Integer> mutualFriendCounts;
+    // Friends of friends, most mutual friends first
+    private List<FriendSuggestion> suggestions;
+    // Parts that missed their deadline or failed; their fields are null
+    private List<String> incompleteParts;
+}
@@ -0,0 +1,27 @@
+package pr.user_relationships.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserSearchCriteria {
+    // All listed hobbies must match
+    private List<String> hobby;
+    private Integer minAge;
+    private Integer maxAge;
+    private Double minScore;
+    private Double maxScore;
+
+    public boolean isEmpty() {
+        return (hobby == null || hobby.isEmpty())
+                && minAge == null && maxAge == null
+                && minScore == null && maxScore == null;
+    }
+}
@@ -41,53 +41,52 @@ public class User {
     @NotEmpty(message = "At least one hobby is required")
     private List<String> hobbies = new ArrayList<>();
 
+    // Each friendship is a single user_friends row with user_id1 < user_id2.
+    // This side owns the rows where this user holds the lower id.
     @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(
             name = "user_friends",
-            joinColumns = @JoinColumn(name = "user_id"),
-            inverseJoinColumns = @JoinColumn(name = "friend_id")
+            joinColumns = @JoinColumn(name = "user_id1"),
+            inverseJoinColumns = @JoinColumn(name = "user_id2")
     )
     @Builder.Default
-    private Set<User> friends = new HashSet<>();
+    private Set<User> higherFriends = new HashSet<>();
+
+    @ManyToMany(mappedBy = "higherFriends", fetch = FetchType.EAGER)
+    @Builder.Default
+    private Set<User> lowerFriends = new HashSet<>();
 
     @CreationTimestamp
     @Column(updatable = false)
     private LocalDateTime createdAt;
 
+    // Filled in from PopularityScores when the user is converted or indexed
     @Transient
     private Double popularityScore;
 
-    // Calculate popularity score
-    public Double getPopularityScore() {
-        if (popularityScore == null) {
-            calculatePopularityScore();
-        }
-        return popularityScore;
-    }
-
-    public void calculatePopularityScore() {
-        int uniqueFriends = friends.size();
-        double sharedHobbiesScore = 0.0;
-
-        for (User friend : friends) {
-            long sharedHobbies = hobbies.stream()
-                    .filter(hobby -> friend.getHobbies().contains(hobby))
-                    .count();
-            sharedHobbiesScore += sharedHobbies;
-        }
-
-        this.popularityScore = uniqueFriends + (sharedHobbiesScore * 0.5);
+    public Set<User> getFriends() {
+        Set<User> friends = new HashSet<>(higherFriends.size() + lowerFriends.size());
+        friends.addAll(higherFriends);
+        friends.addAll(lowerFriends);
+        return friends;
     }
 
     // Helper methods for bidirectional friendship
     public void addFriend(User friend) {
-        this.friends.add(friend);
-        friend.friends.add(this);
+        if (id.compareTo(friend.id) < 0) {
+            this.higherFriends.add(friend);
+            friend.lowerFriends.add(this);
+        } else {
+            this.lowerFriends.add(friend);
+            friend.higherFriends.add(this);
+        }
     }
 
     public void removeFriend(User friend) {
-        this.friends.remove(friend);
-        friend.friends.remove(this);
+        this.higherFriends.remove(friend);
+        this.lowerFriends.remove(friend);
+        friend.higherFriends.remove(this);
+        friend.lowerFriends.remove(this);
     }
 
     @Override
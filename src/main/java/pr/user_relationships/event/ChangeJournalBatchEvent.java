@@ -0,0 +1,26 @@
+package pr.user_relationships.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import pr.user_relationships.outbox.ChangeRecord;
+
+import java.util.List;
+
+/**
+ * Published by the outbox publisher for each batch read from the change
+ * journal, in journal order. Consumers may see a batch again after a restart
+ * or a replay, so they must apply records idempotently. A record can also name
+ * a change whose commit failed, so consumers re-read the current state rather
+ * than trusting the record.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ChangeJournalBatchEvent {
+
+    private final List<ChangeRecord> records;
+
+    // Offset to continue from after this batch
+    private final long nextOffset;
+}
@@ -0,0 +1,19 @@
+package pr.user_relationships.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published after a graph-wide scorer produced a new set of scores, so state
+ * derived from scores (search index, cached responses) can be refreshed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PopularityScoresRecomputedEvent {
+
+    private final String scorer;
+
+    private final int userCount;
+}
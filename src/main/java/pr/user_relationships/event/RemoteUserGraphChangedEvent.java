@@ -0,0 +1,25 @@
+package pr.user_relationships.event;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * A {@link UserGraphChangedEvent} committed by another instance of the service
+ * and received over the cluster invalidation bus. It is republished locally so
+ * in-memory state is refreshed the same way as for local changes, but it is
+ * never forwarded to the cluster again.
+ */
+@Getter
+@ToString(callSuper = true)
+public class RemoteUserGraphChangedEvent extends UserGraphChangedEvent {
+
+    private final String originNodeId;
+
+    public RemoteUserGraphChangedEvent(String originNodeId, Type type, String userId, String otherUserId,
+                                       List<String> affectedUserIds) {
+        super(type, userId, otherUserId, affectedUserIds);
+        this.originNodeId = originNodeId;
+    }
+}
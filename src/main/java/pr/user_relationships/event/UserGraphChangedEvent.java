@@ -0,0 +1,36 @@
+package pr.user_relationships.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Published by {@code UserService} for every committed mutation of users or
+ * friendships. Listeners use it to keep derived in-memory state up to date.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UserGraphChangedEvent {
+
+    public enum Type {
+        USER_CREATED,
+        USER_UPDATED,
+        USER_DELETED,
+        USERS_LINKED,
+        USERS_UNLINKED
+    }
+
+    private final Type type;
+
+    private final String userId;
+
+    // The other side of a link/unlink, otherwise null
+    private final String otherUserId;
+
+    // Further users whose derived state (e.g. popularity score) changed, such as
+    // the friends of a deleted user or of a user whose hobbies changed
+    private final List<String> affectedUserIds;
+}
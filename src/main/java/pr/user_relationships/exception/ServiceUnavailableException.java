@@ -0,0 +1,7 @@
+package pr.user_relationships.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
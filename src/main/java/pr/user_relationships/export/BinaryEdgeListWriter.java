@@ -0,0 +1,45 @@
+package pr.user_relationships.export;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Compact edge list: the 4-byte magic {@code UGEL}, a 4-byte format version,
+ * then one 32-byte record per friendship holding both ids as big-endian
+ * (most significant, least significant) long pairs, up to the end of the file.
+ */
+final class BinaryEdgeListWriter implements GraphExportWriter {
+
+    static final int MAGIC = 0x5547454C;
+    static final int VERSION = 1;
+
+    private final ChannelSink sink;
+
+    BinaryEdgeListWriter(ChannelSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void begin() throws IOException {
+        sink.putInt(MAGIC);
+        sink.putInt(VERSION);
+    }
+
+    @Override
+    public void node(UUID id, String username, Integer age) {
+    }
+
+    @Override
+    public void beginEdges() {
+    }
+
+    @Override
+    public void edge(UUID source, UUID target) throws IOException {
+        sink.putUuid(source);
+        sink.putUuid(target);
+    }
+
+    @Override
+    public void end() {
+    }
+}
@@ -0,0 +1,82 @@
+package pr.user_relationships.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Accumulates export output in one direct buffer and hands it to the channel
+ * whenever it fills up, so memory use is the buffer size no matter how large
+ * the export gets.
+ */
+final class ChannelSink implements Closeable {
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private long bytesWritten;
+
+    ChannelSink(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    void put(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.remaining()) {
+            flush();
+            if (bytes.length > buffer.capacity()) {
+                write(ByteBuffer.wrap(bytes));
+                return;
+            }
+        }
+        buffer.put(bytes);
+    }
+
+    void putUtf8(String text) throws IOException {
+        put(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    void putUuid(UUID id) throws IOException {
+        ensure(2 * Long.BYTES);
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+    }
+
+    long bytesWritten() {
+        return bytesWritten + buffer.position();
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void write(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            bytesWritten += channel.write(source);
+        }
+    }
+}
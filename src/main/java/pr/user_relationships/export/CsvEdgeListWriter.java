@@ -0,0 +1,38 @@
+package pr.user_relationships.export;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * One {@code source,target} line per friendship after a header line.
+ */
+final class CsvEdgeListWriter implements GraphExportWriter {
+
+    private final ChannelSink sink;
+
+    CsvEdgeListWriter(ChannelSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void begin() throws IOException {
+        sink.putUtf8("source,target\n");
+    }
+
+    @Override
+    public void node(UUID id, String username, Integer age) {
+    }
+
+    @Override
+    public void beginEdges() {
+    }
+
+    @Override
+    public void edge(UUID source, UUID target) throws IOException {
+        sink.putUtf8(source + "," + target + "\n");
+    }
+
+    @Override
+    public void end() {
+    }
+}
@@ -0,0 +1,31 @@
+package pr.user_relationships.export;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.GZIPOutputStream;
+
+public enum ExportCompression {
+
+    NONE(""),
+    GZIP(".gz");
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final String suffix;
+
+    ExportCompression(String suffix) {
+        this.suffix = suffix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    WritableByteChannel wrap(WritableByteChannel channel) throws IOException {
+        if (this == NONE) {
+            return channel;
+        }
+        return Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(channel), GZIP_BUFFER_SIZE));
+    }
+}
@@ -0,0 +1,40 @@
+package pr.user_relationships.export;
+
+import java.util.function.Function;
+
+public enum ExportFormat {
+
+    GRAPHML("graphml", "application/graphml+xml", true, GraphMlWriter::new),
+    CSV("csv", "text/csv", false, CsvEdgeListWriter::new),
+    BINARY("bin", "application/octet-stream", false, BinaryEdgeListWriter::new);
+
+    private final String extension;
+    private final String contentType;
+    private final boolean includesNodes;
+    private final Function<ChannelSink, GraphExportWriter> writerFactory;
+
+    ExportFormat(String extension, String contentType, boolean includesNodes,
+                 Function<ChannelSink, GraphExportWriter> writerFactory) {
+        this.extension = extension;
+        this.contentType = contentType;
+        this.includesNodes = includesNodes;
+        this.writerFactory = writerFactory;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    // Edge lists skip the users table entirely
+    public boolean includesNodes() {
+        return includesNodes;
+    }
+
+    GraphExportWriter newWriter(ChannelSink sink) {
+        return writerFactory.apply(sink);
+    }
+}
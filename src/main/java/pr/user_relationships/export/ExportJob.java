@@ -0,0 +1,65 @@
+package pr.user_relationships.export;
+
+import pr.user_relationships.dto.ExportJobStatus;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+/**
+ * State of one export. Progress fields are only written by the export thread
+ * and read by status requests, so plain volatile fields are enough.
+ */
+final class ExportJob {
+
+    enum State { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    final String id;
+    final ExportFormat format;
+    final ExportCompression compression;
+    final Path file;
+    final LocalDateTime createdAt = LocalDateTime.now();
+
+    volatile State state = State.QUEUED;
+    // Planner row estimates, so progress can be reported without counting hundreds of millions of rows
+    volatile long estimatedRows;
+    volatile long usersWritten;
+    volatile long edgesWritten;
+    volatile long bytesWritten;
+    volatile LocalDateTime finishedAt;
+    volatile String error;
+
+    ExportJob(String id, ExportFormat format, ExportCompression compression, Path file) {
+        this.id = id;
+        this.format = format;
+        this.compression = compression;
+        this.file = file;
+    }
+
+    String fileName() {
+        return file.getFileName().toString();
+    }
+
+    ExportJobStatus toStatus() {
+        Double progress = null;
+        if (state == State.COMPLETED) {
+            progress = 1.0;
+        } else if (estimatedRows > 0) {
+            // Estimates can be off; never claim completion before the job says so
+            progress = Math.min(0.99, (double) (usersWritten + edgesWritten) / estimatedRows);
+        }
+
+        return ExportJobStatus.builder()
+                .id(id)
+                .format(format.name())
+                .compression(compression.name())
+                .status(state.name())
+                .usersWritten(usersWritten)
+                .edgesWritten(edgesWritten)
+                .bytesWritten(bytesWritten)
+                .progress(progress)
+                .createdAt(createdAt)
+                .finishedAt(finishedAt)
+                .error(error)
+                .build();
+    }
+}
@@ -0,0 +1,21 @@
+package pr.user_relationships.export;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("app.export")
+public class ExportProperties {
+
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "user-graph-exports");
+
+    // Rows per cursor fetch and size of the direct output buffer; together they bound memory use
+    private int fetchSize = 10_000;
+    private int bufferSize = 1024 * 1024;
+
+    // Finished exports and their files are deleted after this long
+    private Duration retention = Duration.ofHours(24);
+}
@@ -0,0 +1,208 @@
+package pr.user_relationships.export;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pr.user_relationships.dto.ExportJobStatus;
+import pr.user_relationships.exception.ConflictException;
+import pr.user_relationships.exception.ResourceNotFoundException;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Runs graph exports in the background, one at a time. Users and friendships
+ * are streamed from a server-side cursor straight into the output file
+ * through a fixed direct buffer, so neither entities nor the whole result set
+ * are ever held in memory. The file only appears under its final name once
+ * it is complete.
+ */
+@Service
+@EnableConfigurationProperties(ExportProperties.class)
+@Slf4j
+public class GraphExportService {
+
+    private final ExportProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "graph-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public GraphExportService(ExportProperties properties, DataSource dataSource,
+                              PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        // The PostgreSQL driver only uses a cursor with a fetch size inside a transaction
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(properties.getFetchSize());
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Users and friendships are read by separate queries; one snapshot keeps every edge's nodes in the export
+        this.readOnlyTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    public ExportJobStatus start(ExportFormat format, ExportCompression compression) {
+        String id = UUID.randomUUID().toString();
+        Path file = properties.getDirectory().resolve(
+                "graph-" + id + "." + format.getExtension() + compression.getSuffix());
+        ExportJob job = new ExportJob(id, format, compression, file);
+        jobs.put(id, job);
+        executor.execute(() -> run(job));
+        log.info("Queued {} graph export {}", format, id);
+        return job.toStatus();
+    }
+
+    public ExportJobStatus getStatus(String id) {
+        return findJob(id).toStatus();
+    }
+
+    public List<ExportJobStatus> getJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing((ExportJob job) -> job.createdAt).reversed())
+                .map(ExportJob::toStatus)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The finished export file, for download.
+     */
+    public ExportFile getFile(String id) {
+        ExportJob job = findJob(id);
+        if (job.state != ExportJob.State.COMPLETED) {
+            throw new ConflictException("Export " + id + " is " + job.state);
+        }
+        String contentType = job.compression == ExportCompression.GZIP
+                ? "application/gzip"
+                : job.format.getContentType();
+        return new ExportFile(job.file, job.fileName(), contentType);
+    }
+
+    @Scheduled(fixedDelayString = "${app.export.cleanup-interval-ms:600000}")
+    public void deleteExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getRetention());
+        for (ExportJob job : jobs.values()) {
+            if (job.finishedAt != null && job.finishedAt.isBefore(cutoff)) {
+                jobs.remove(job.id);
+                try {
+                    Files.deleteIfExists(job.file);
+                } catch (IOException e) {
+                    log.warn("Could not delete expired export {}", job.file, e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private ExportJob findJob(String id) {
+        ExportJob job = jobs.get(id);
+        if (job == null) {
+            throw new ResourceNotFoundException("Export not found with id: " + id);
+        }
+        return job;
+    }
+
+    private void run(ExportJob job) {
+        job.state = ExportJob.State.RUNNING;
+        long started = System.nanoTime();
+        Path partial = job.file.resolveSibling(job.fileName() + ".part");
+        try {
+            Files.createDirectories(job.file.getParent());
+            try (ChannelSink sink = new ChannelSink(
+                    job.compression.wrap(FileChannel.open(partial, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)),
+                    properties.getBufferSize())) {
+                readOnlyTransaction.executeWithoutResult(status -> write(job, sink));
+                job.bytesWritten = sink.bytesWritten();
+            }
+            Files.move(partial, job.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.state = ExportJob.State.COMPLETED;
+            log.info("Exported {} users and {} friendships as {} to {} in {} ms", job.usersWritten,
+                    job.edgesWritten, job.format, job.file, (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.state = ExportJob.State.FAILED;
+            log.error("Graph export {} failed", job.id, e);
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // Left for the operating system's temp cleanup
+            }
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    private void write(ExportJob job, ChannelSink sink) {
+        GraphExportWriter writer = job.format.newWriter(sink);
+        try {
+            job.estimatedRows = estimateRows("user_friends")
+                    + (job.format.includesNodes() ? estimateRows("users") : 0);
+            writer.begin();
+
+            if (job.format.includesNodes()) {
+                jdbcTemplate.query("SELECT id, username, age FROM users", rs -> {
+                    try {
+                        writer.node(rs.getObject(1, UUID.class), rs.getString(2), rs.getObject(3, Integer.class));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    job.usersWritten++;
+                    job.bytesWritten = sink.bytesWritten();
+                });
+            }
+
+            writer.beginEdges();
+            jdbcTemplate.query("SELECT user_id1, user_id2 FROM user_friends", rs -> {
+                try {
+                    writer.edge(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                job.edgesWritten++;
+                job.bytesWritten = sink.bytesWritten();
+            });
+
+            writer.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long estimateRows(String table) {
+        Long estimate = jdbcTemplate.queryForObject(
+                "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE oid = CAST(? AS regclass)",
+                Long.class, table);
+        return estimate == null ? 0 : estimate;
+    }
+
+    public record ExportFile(Path path, String fileName, String contentType) {
+    }
+}
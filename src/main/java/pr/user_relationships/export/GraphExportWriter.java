@@ -0,0 +1,22 @@
+package pr.user_relationships.export;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Serializes a graph as it is streamed: all nodes first (only when
+ * {@link ExportFormat#includesNodes()}), then all edges.
+ */
+interface GraphExportWriter {
+
+    void begin() throws IOException;
+
+    // age is null for users without one
+    void node(UUID id, String username, Integer age) throws IOException;
+
+    void beginEdges() throws IOException;
+
+    void edge(UUID source, UUID target) throws IOException;
+
+    void end() throws IOException;
+}
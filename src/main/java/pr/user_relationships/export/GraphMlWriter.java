@@ -0,0 +1,68 @@
+package pr.user_relationships.export;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * GraphML as read by Gephi, NetworkX and yEd: an undirected graph whose nodes
+ * carry username and age attributes. Users without an age have no age attribute.
+ */
+final class GraphMlWriter implements GraphExportWriter {
+
+    private final ChannelSink sink;
+
+    GraphMlWriter(ChannelSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void begin() throws IOException {
+        sink.putUtf8("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n"
+                + "  <key id=\"username\" for=\"node\" attr.name=\"username\" attr.type=\"string\"/>\n"
+                + "  <key id=\"age\" for=\"node\" attr.name=\"age\" attr.type=\"int\"/>\n"
+                + "  <graph id=\"users\" edgedefault=\"undirected\">\n");
+    }
+
+    @Override
+    public void node(UUID id, String username, Integer age) throws IOException {
+        sink.putUtf8("    <node id=\"" + id + "\"><data key=\"username\">" + escape(username) + "</data>"
+                + (age != null ? "<data key=\"age\">" + age + "</data>" : "") + "</node>\n");
+    }
+
+    @Override
+    public void beginEdges() {
+    }
+
+    @Override
+    public void edge(UUID source, UUID target) throws IOException {
+        sink.putUtf8("    <edge source=\"" + source + "\" target=\"" + target + "\"/>\n");
+    }
+
+    @Override
+    public void end() throws IOException {
+        sink.putUtf8("  </graph>\n</graphml>\n");
+    }
+
+    static String escape(String text) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement = switch (c) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&apos;";
+                default -> null;
+            };
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(text.length() + 16).append(text, 0, i);
+            }
+            if (escaped != null) {
+                escaped.append(replacement != null ? replacement : String.valueOf(c));
+            }
+        }
+        return escaped == null ? text : escaped.toString();
+    }
+}
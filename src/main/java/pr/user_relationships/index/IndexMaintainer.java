@@ -0,0 +1,140 @@
+package pr.user_relationships.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pr.user_relationships.entity.User;
+import pr.user_relationships.event.ChangeJournalBatchEvent;
+import pr.user_relationships.event.PopularityScoresRecomputedEvent;
+import pr.user_relationships.event.UserGraphChangedEvent;
+import pr.user_relationships.outbox.ChangeRecord;
+import pr.user_relationships.repository.UserLoader;
+import pr.user_relationships.repository.UserRepository;
+import pr.user_relationships.scoring.PopularityScores;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Loads all users into every {@link UserIndex} on startup and applies each
+ * committed {@link UserGraphChangedEvent} by re-reading the affected users.
+ * They are re-read through {@link UserLoader}, so the lock below is held for a
+ * few IN-list queries rather than for loading the friends of friends.
+ * Users are handed to the indexes with their current popularity score assigned.
+ * <p>
+ * Reading the users and applying them to the indexes happens under one lock.
+ * Two commits touching the same user are therefore applied in the order of
+ * their reads, and a later read never sees less than an earlier one. Without
+ * the lock an older read could overwrite a newer one in the indexes.
+ * <p>
+ * The users named in the change journal are refreshed once more when the
+ * outbox publishes them. This repairs the indexes when applying a commit
+ * failed, and after a restart or replay. A record can be published before its
+ * own commit finishes, but the commit is then still applied afterwards.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IndexMaintainer {
+
+    private final UserRepository userRepository;
+    private final UserLoader userLoader;
+    private final PopularityScores popularityScores;
+    private final List<UserIndex> indexes;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public synchronized void rebuildAll() {
+        long started = System.nanoTime();
+        List<User> users = userRepository.findAll();
+        popularityScores.assignAll(users);
+        for (UserIndex index : indexes) {
+            if (!index.reload()) {
+                index.rebuild(users);
+            }
+        }
+        log.info("Rebuilt {} user indexes from {} users in {} ms",
+                indexes.size(), users.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Only the scores changed, so the indexes update them in place without reloading users
+    @EventListener(PopularityScoresRecomputedEvent.class)
+    public synchronized void refreshScores() {
+        long started = System.nanoTime();
+        indexes.forEach(index -> index.refreshScores(popularityScores::scoreOf));
+        log.info("Refreshed popularity scores in {} user indexes in {} ms",
+                indexes.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Runs after the mutation committed, in a fresh transaction so it reads the committed rows
+    @TransactionalEventListener
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onUserGraphChanged(UserGraphChangedEvent event) {
+        apply(event);
+    }
+
+    public synchronized void apply(UserGraphChangedEvent event) {
+        Set<String> changed = new LinkedHashSet<>();
+        changed.add(event.getUserId());
+        if (event.getOtherUserId() != null) {
+            changed.add(event.getOtherUserId());
+        }
+        if (event.getAffectedUserIds() != null) {
+            changed.addAll(event.getAffectedUserIds());
+        }
+
+        List<String> removed = List.of();
+        if (event.getType() == UserGraphChangedEvent.Type.USER_DELETED) {
+            removed = List.of(event.getUserId());
+            changed.remove(event.getUserId());
+        }
+
+        // Users deleted again in the meantime are simply not found and stay removed
+        List<User> users = changed.isEmpty() ? List.of() : userLoader.findAllWithFriendHobbiesById(changed);
+        popularityScores.forget(removed);
+        popularityScores.assign(users);
+        for (UserIndex index : indexes) {
+            if (!removed.isEmpty()) {
+                index.remove(removed);
+            }
+            index.upsert(users);
+        }
+    }
+
+    // Read on the primary, so a lagging replica cannot undo a change already applied
+    @EventListener(ChangeJournalBatchEvent.class)
+    @Transactional
+    public synchronized void applyJournal(ChangeJournalBatchEvent batch) {
+        Set<String> named = new LinkedHashSet<>();
+        for (ChangeRecord record : batch.getRecords()) {
+            named.add(record.getUserId());
+            if (record.getOtherUserId() != null) {
+                named.add(record.getOtherUserId());
+            }
+            named.addAll(record.getAffectedUserIds());
+        }
+        if (named.isEmpty()) {
+            return;
+        }
+
+        // Records may be replayed or belong to a failed commit, so the current rows decide
+        List<User> users = userLoader.findAllWithFriendHobbiesById(named);
+        Set<String> found = users.stream().map(User::getId).collect(Collectors.toSet());
+        List<String> removed = named.stream().filter(id -> !found.contains(id)).toList();
+        popularityScores.forget(removed);
+        popularityScores.assign(users);
+        for (UserIndex index : indexes) {
+            if (!removed.isEmpty()) {
+                index.remove(removed);
+            }
+            index.upsert(users);
+        }
+    }
+}
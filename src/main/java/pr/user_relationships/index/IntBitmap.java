@@ -0,0 +1,390 @@
+package pr.user_relationships.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of non-negative ints in the style of Roaring bitmaps. Values
+ * are partitioned by their high 16 bits; each partition is stored as a sorted
+ * {@code char[]} while sparse and as a 65536-bit {@code long[]} once it holds
+ * more than {@value #ARRAY_LIMIT} values.
+ * <p>
+ * Not thread-safe; callers synchronize access.
+ */
+public final class IntBitmap {
+
+    static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Object[] containers = new Object[4];
+    private int[] cardinalities = new int[4];
+    private int size;
+
+    public void add(int value) {
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int slot = Arrays.binarySearch(keys, 0, size, key);
+        if (slot < 0) {
+            slot = -slot - 1;
+            insertContainer(slot, key, new char[4]);
+        }
+
+        Object container = containers[slot];
+        if (container instanceof long[] words) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                cardinalities[slot]++;
+            }
+            return;
+        }
+
+        char[] values = (char[]) container;
+        int cardinality = cardinalities[slot];
+        int position = Arrays.binarySearch(values, 0, cardinality, low);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        if (cardinality == ARRAY_LIMIT) {
+            long[] words = toWords(values, cardinality);
+            words[low >>> 6] |= 1L << low;
+            containers[slot] = words;
+        } else {
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+                containers[slot] = values;
+            }
+            System.arraycopy(values, position, values, position + 1, cardinality - position);
+            values[position] = low;
+        }
+        cardinalities[slot]++;
+    }
+
+    public void remove(int value) {
+        int slot = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        if (slot < 0) {
+            return;
+        }
+        char low = (char) value;
+        Object container = containers[slot];
+        if (container instanceof long[] words) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                return;
+            }
+            words[low >>> 6] &= ~bit;
+            if (--cardinalities[slot] == ARRAY_LIMIT) {
+                containers[slot] = toValues(words, ARRAY_LIMIT);
+            }
+        } else {
+            char[] values = (char[]) container;
+            int cardinality = cardinalities[slot];
+            int position = Arrays.binarySearch(values, 0, cardinality, low);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(values, position + 1, values, position, cardinality - position - 1);
+            cardinalities[slot]--;
+        }
+        if (cardinalities[slot] == 0) {
+            removeContainer(slot);
+        }
+    }
+
+    public boolean contains(int value) {
+        int slot = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        if (slot < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object container = containers[slot];
+        if (container instanceof long[] words) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[slot], low) >= 0;
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += cardinalities[i];
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            int high = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof long[] words) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        consumer.accept(high | (w << 6) + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for (int v = 0; v < cardinalities[i]; v++) {
+                    consumer.accept(high | values[v]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a new bitmap holding the values present in both bitmaps.
+     */
+    public IntBitmap and(IntBitmap other) {
+        IntBitmap result = new IntBitmap();
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendAnd(keys[i], containers[i], cardinalities[i],
+                        other.containers[j], other.cardinalities[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new bitmap holding the values present in either bitmap.
+     */
+    public IntBitmap or(IntBitmap other) {
+        IntBitmap result = new IntBitmap();
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], copy(containers[i], cardinalities[i]), cardinalities[i]);
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], copy(other.containers[j], other.cardinalities[j]),
+                        other.cardinalities[j]);
+                j++;
+            } else {
+                result.appendOr(keys[i], containers[i], cardinalities[i],
+                        other.containers[j], other.cardinalities[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds every value of the other bitmap to this one. Unlike {@link #or},
+     * containers this bitmap already holds as bitsets are updated in place.
+     */
+    public void addAll(IntBitmap other) {
+        for (int j = 0; j < other.size; j++) {
+            Object theirs = other.containers[j];
+            int theirCardinality = other.cardinalities[j];
+            int slot = Arrays.binarySearch(keys, 0, size, other.keys[j]);
+            if (slot < 0) {
+                slot = -slot - 1;
+                insertContainer(slot, other.keys[j], copy(theirs, theirCardinality));
+                cardinalities[slot] = theirCardinality;
+                continue;
+            }
+
+            Object ours = containers[slot];
+            int ourCardinality = cardinalities[slot];
+            if (ours instanceof char[] values && theirs instanceof char[] theirValues
+                    && ourCardinality + theirCardinality <= ARRAY_LIMIT) {
+                char[] merged = new char[ourCardinality + theirCardinality];
+                cardinalities[slot] = merge(values, ourCardinality, theirValues, theirCardinality, merged);
+                containers[slot] = merged;
+                continue;
+            }
+            long[] words = ours instanceof long[] ourWords ? ourWords : toWords((char[]) ours, ourCardinality);
+            orInto(words, theirs, theirCardinality);
+            int cardinality = bitCount(words);
+            containers[slot] = cardinality > ARRAY_LIMIT ? words : toValues(words, cardinality);
+            cardinalities[slot] = cardinality;
+        }
+    }
+
+    public IntBitmap copy() {
+        IntBitmap result = new IntBitmap();
+        for (int i = 0; i < size; i++) {
+            result.append(keys[i], copy(containers[i], cardinalities[i]), cardinalities[i]);
+        }
+        return result;
+    }
+
+    private void appendAnd(char key, Object a, int cardinalityA, Object b, int cardinalityB) {
+        if (a instanceof long[] wordsA && b instanceof long[] wordsB) {
+            long[] words = new long[BITMAP_WORDS];
+            int cardinality = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                words[w] = wordsA[w] & wordsB[w];
+                cardinality += Long.bitCount(words[w]);
+            }
+            if (cardinality > ARRAY_LIMIT) {
+                append(key, words, cardinality);
+            } else if (cardinality > 0) {
+                append(key, toValues(words, cardinality), cardinality);
+            }
+            return;
+        }
+
+        if (a instanceof long[]) {
+            Object swap = a;
+            a = b;
+            b = swap;
+            cardinalityA = cardinalityB;
+        }
+        char[] valuesA = (char[]) a;
+        char[] values = new char[cardinalityA];
+        int cardinality = 0;
+        if (b instanceof long[] wordsB) {
+            for (int v = 0; v < cardinalityA; v++) {
+                char low = valuesA[v];
+                if ((wordsB[low >>> 6] & (1L << low)) != 0) {
+                    values[cardinality++] = low;
+                }
+            }
+        } else {
+            char[] valuesB = (char[]) b;
+            int i = 0, j = 0;
+            while (i < cardinalityA && j < cardinalityB) {
+                if (valuesA[i] < valuesB[j]) {
+                    i++;
+                } else if (valuesA[i] > valuesB[j]) {
+                    j++;
+                } else {
+                    values[cardinality++] = valuesA[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        if (cardinality > 0) {
+            append(key, values, cardinality);
+        }
+    }
+
+    private void appendOr(char key, Object a, int cardinalityA, Object b, int cardinalityB) {
+        if (a instanceof char[] valuesA && b instanceof char[] valuesB
+                && cardinalityA + cardinalityB <= ARRAY_LIMIT) {
+            char[] values = new char[cardinalityA + cardinalityB];
+            append(key, values, merge(valuesA, cardinalityA, valuesB, cardinalityB, values));
+            return;
+        }
+
+        long[] words = a instanceof long[] wordsA ? wordsA.clone() : toWords((char[]) a, cardinalityA);
+        orInto(words, b, cardinalityB);
+        int cardinality = bitCount(words);
+        if (cardinality > ARRAY_LIMIT) {
+            append(key, words, cardinality);
+        } else {
+            append(key, toValues(words, cardinality), cardinality);
+        }
+    }
+
+    private void append(char key, Object container, int cardinality) {
+        insertContainer(size, key, container);
+        cardinalities[size - 1] = cardinality;
+    }
+
+    private void insertContainer(int slot, char key, Object container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+            cardinalities = Arrays.copyOf(cardinalities, size * 2);
+        }
+        System.arraycopy(keys, slot, keys, slot + 1, size - slot);
+        System.arraycopy(containers, slot, containers, slot + 1, size - slot);
+        System.arraycopy(cardinalities, slot, cardinalities, slot + 1, size - slot);
+        keys[slot] = key;
+        containers[slot] = container;
+        cardinalities[slot] = 0;
+        size++;
+    }
+
+    private void removeContainer(int slot) {
+        System.arraycopy(keys, slot + 1, keys, slot, size - slot - 1);
+        System.arraycopy(containers, slot + 1, containers, slot, size - slot - 1);
+        System.arraycopy(cardinalities, slot + 1, cardinalities, slot, size - slot - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private static Object copy(Object container, int cardinality) {
+        if (container instanceof long[] words) {
+            return words.clone();
+        }
+        return Arrays.copyOf((char[]) container, Math.max(cardinality, 1));
+    }
+
+    // Writes the sorted union of both arrays into target and returns its length
+    private static int merge(char[] valuesA, int cardinalityA, char[] valuesB, int cardinalityB, char[] target) {
+        int i = 0, j = 0, cardinality = 0;
+        while (i < cardinalityA || j < cardinalityB) {
+            if (j == cardinalityB || (i < cardinalityA && valuesA[i] < valuesB[j])) {
+                target[cardinality++] = valuesA[i++];
+            } else if (i == cardinalityA || valuesA[i] > valuesB[j]) {
+                target[cardinality++] = valuesB[j++];
+            } else {
+                target[cardinality++] = valuesA[i++];
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    private static void orInto(long[] words, Object container, int cardinality) {
+        if (container instanceof long[] other) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                words[w] |= other[w];
+            }
+        } else {
+            char[] values = (char[]) container;
+            for (int v = 0; v < cardinality; v++) {
+                words[values[v] >>> 6] |= 1L << values[v];
+            }
+        }
+    }
+
+    private static int bitCount(long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality;
+    }
+
+    private static long[] toWords(char[] values, int cardinality) {
+        long[] words = new long[BITMAP_WORDS];
+        for (int v = 0; v < cardinality; v++) {
+            words[values[v] >>> 6] |= 1L << values[v];
+        }
+        return words;
+    }
+
+    private static char[] toValues(long[] words, int cardinality) {
+        char[] values = new char[Math.max(cardinality, 1)];
+        int position = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[position++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,42 @@
+package pr.user_relationships.index;
+
+import pr.user_relationships.entity.User;
+
+import java.util.Collection;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * In-memory index over users, kept in sync with the database by {@link IndexMaintainer}.
+ */
+public interface UserIndex {
+
+    /**
+     * Replaces the whole index content.
+     */
+    void rebuild(Collection<User> users);
+
+    /**
+     * Replaces the whole index content by reading the database directly, for
+     * indexes that should not need every user loaded as an entity.
+     *
+     * @return false, having done nothing, if the index is rebuilt from users instead
+     */
+    default boolean reload() {
+        return false;
+    }
+
+    /**
+     * Adds the given users or replaces their previous entries.
+     */
+    void upsert(Collection<User> users);
+
+    void remove(Collection<String> userIds);
+
+    /**
+     * Graph-wide popularity scores were recomputed. Indexes that hold scores
+     * replace them with {@code scores} for every user they contain; everything
+     * else about the users is unchanged.
+     */
+    default void refreshScores(ToDoubleFunction<String> scores) {
+    }
+}
@@ -0,0 +1,283 @@
+package pr.user_relationships.index;
+
+import org.springframework.stereotype.Component;
+import pr.user_relationships.dto.UserSearchCriteria;
+import pr.user_relationships.entity.User;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Inverted index from hobby to users plus range indexes on age and popularity
+ * score. Users are identified by dense int ordinals so every posting list is an
+ * {@link IntBitmap}; a query intersects the hobby bitmaps and the unions of the
+ * age and score buckets in range.
+ * <p>
+ * Graph scorers give almost every user a distinct score, so scores are not
+ * indexed by exact value. Each score bucket spans 1/256 of a power of two,
+ * which keeps the number of buckets small for any score distribution. A range
+ * query takes the inner buckets whole and checks the exact scores only in the
+ * two buckets at its ends.
+ */
+@Component
+public class UserSearchIndex implements UserIndex {
+
+    // Drops all but the top 8 mantissa bits of a score
+    private static final int SCORE_BUCKET_SHIFT = 44;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private IntBitmap allUsers = new IntBitmap();
+
+    private final Map<String, IntBitmap> byHobby = new HashMap<>();
+    private final NavigableMap<Integer, IntBitmap> byAge = new TreeMap<>();
+    private final NavigableMap<Long, IntBitmap> byScore = new TreeMap<>();
+
+    @Override
+    public void rebuild(Collection<User> users) {
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            entries.clear();
+            freeOrdinals.clear();
+            allUsers = new IntBitmap();
+            byHobby.clear();
+            byAge.clear();
+            byScore.clear();
+            for (User user : users) {
+                put(user);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsert(Collection<User> users) {
+        lock.writeLock().lock();
+        try {
+            users.forEach(this::put);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Collection<String> userIds) {
+        lock.writeLock().lock();
+        try {
+            for (String userId : userIds) {
+                Integer ordinal = ordinals.remove(userId);
+                if (ordinal != null) {
+                    unindex(ordinal);
+                    entries.set(ordinal, null);
+                    freeOrdinals.push(ordinal);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Moves users whose score changed to their new score bucket
+    @Override
+    public void refreshScores(ToDoubleFunction<String> scores) {
+        lock.writeLock().lock();
+        try {
+            for (int ordinal = 0; ordinal < entries.size(); ordinal++) {
+                Entry entry = entries.get(ordinal);
+                if (entry == null) {
+                    continue;
+                }
+                double score = scores.applyAsDouble(entry.userId);
+                if (Double.compare(score, entry.score) != 0) {
+                    entries.set(ordinal, new Entry(entry.userId, entry.hobbies, entry.age, score));
+                    long bucket = scoreBucket(score);
+                    if (bucket != scoreBucket(entry.score)) {
+                        removeFrom(byScore, scoreBucket(entry.score), ordinal);
+                        byScore.computeIfAbsent(bucket, key -> new IntBitmap()).add(ordinal);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of all users matching every given criterion; absent
+     * criteria match everyone.
+     */
+    public List<String> search(UserSearchCriteria criteria) {
+        lock.readLock().lock();
+        try {
+            IntBitmap result = null;
+
+            if (criteria.getHobby() != null) {
+                for (String hobby : criteria.getHobby()) {
+                    IntBitmap postings = byHobby.get(normalize(hobby));
+                    if (postings == null) {
+                        return List.of();
+                    }
+                    result = result == null ? postings.copy() : result.and(postings);
+                }
+            }
+
+            if (criteria.getMinAge() != null || criteria.getMaxAge() != null) {
+                int low = criteria.getMinAge() != null ? criteria.getMinAge() : Integer.MIN_VALUE;
+                int high = criteria.getMaxAge() != null ? criteria.getMaxAge() : Integer.MAX_VALUE;
+                if (low > high) {
+                    return List.of();
+                }
+                result = intersect(result, union(byAge.subMap(low, true, high, true).values()));
+            }
+
+            if (criteria.getMinScore() != null || criteria.getMaxScore() != null) {
+                double low = criteria.getMinScore() != null ? criteria.getMinScore() : Double.NEGATIVE_INFINITY;
+                double high = criteria.getMaxScore() != null ? criteria.getMaxScore() : Double.POSITIVE_INFINITY;
+                if (low > high) {
+                    return List.of();
+                }
+                result = intersect(result, scoreRange(low, high));
+            }
+
+            IntBitmap matches = result != null ? result : allUsers;
+            List<String> ids = new ArrayList<>(matches.cardinality());
+            matches.forEach(ordinal -> ids.add(entries.get(ordinal).userId));
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(User user) {
+        Integer ordinal = ordinals.get(user.getId());
+        if (ordinal != null) {
+            unindex(ordinal);
+        } else {
+            ordinal = freeOrdinals.isEmpty() ? entries.size() : freeOrdinals.pop();
+            ordinals.put(user.getId(), ordinal);
+            if (ordinal == entries.size()) {
+                entries.add(null);
+            }
+        }
+
+        Set<String> hobbies = user.getHobbies().stream()
+                .map(UserSearchIndex::normalize)
+                .collect(Collectors.toSet());
+        double score = user.getPopularityScore() == null ? 0.0 : user.getPopularityScore();
+        Entry entry = new Entry(user.getId(), hobbies, user.getAge(), score);
+        entries.set(ordinal, entry);
+
+        allUsers.add(ordinal);
+        for (String hobby : hobbies) {
+            byHobby.computeIfAbsent(hobby, key -> new IntBitmap()).add(ordinal);
+        }
+        if (entry.age != null) {
+            byAge.computeIfAbsent(entry.age, key -> new IntBitmap()).add(ordinal);
+        }
+        byScore.computeIfAbsent(scoreBucket(entry.score), key -> new IntBitmap()).add(ordinal);
+    }
+
+    private void unindex(int ordinal) {
+        Entry entry = entries.get(ordinal);
+        allUsers.remove(ordinal);
+        for (String hobby : entry.hobbies) {
+            removeFrom(byHobby, hobby, ordinal);
+        }
+        if (entry.age != null) {
+            removeFrom(byAge, entry.age, ordinal);
+        }
+        removeFrom(byScore, scoreBucket(entry.score), ordinal);
+    }
+
+    private static <K> void removeFrom(Map<K, IntBitmap> index, K key, int ordinal) {
+        IntBitmap postings = index.get(key);
+        if (postings != null) {
+            postings.remove(ordinal);
+            if (postings.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static IntBitmap intersect(IntBitmap current, IntBitmap filter) {
+        return current == null ? filter : current.and(filter);
+    }
+
+    private static IntBitmap union(Collection<IntBitmap> bitmaps) {
+        IntBitmap result = new IntBitmap();
+        for (IntBitmap bitmap : bitmaps) {
+            result.addAll(bitmap);
+        }
+        return result;
+    }
+
+    private IntBitmap scoreRange(double low, double high) {
+        long lowBucket = scoreBucket(low);
+        long highBucket = scoreBucket(high);
+        IntBitmap result = new IntBitmap();
+        for (Map.Entry<Long, IntBitmap> bucket : byScore.subMap(lowBucket, true, highBucket, true).entrySet()) {
+            if (bucket.getKey() != lowBucket && bucket.getKey() != highBucket) {
+                result.addAll(bucket.getValue());
+                continue;
+            }
+            bucket.getValue().forEach(ordinal -> {
+                double score = entries.get(ordinal).score;
+                if (score >= low && score <= high) {
+                    result.add(ordinal);
+                }
+            });
+        }
+        return result;
+    }
+
+    // Monotonic in the score: the bits of negative scores are flipped so longs sort like doubles
+    static long scoreBucket(double score) {
+        long bits = Double.doubleToLongBits(score + 0.0);
+        return (bits ^ ((bits >> 63) & Long.MAX_VALUE)) >> SCORE_BUCKET_SHIFT;
+    }
+
+    private static String normalize(String hobby) {
+        return hobby.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry {
+        private final String userId;
+        private final Set<String> hobbies;
+        private final Integer age;
+        private final double score;
+
+        private Entry(String userId, Set<String> hobbies, Integer age, double score) {
+            this.userId = userId;
+            this.hobbies = hobbies;
+            this.age = age;
+            this.score = score;
+        }
+    }
+}
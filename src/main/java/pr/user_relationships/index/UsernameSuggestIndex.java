@@ -0,0 +1,269 @@
+package pr.user_relationships.index;
+
+import org.springframework.stereotype.Component;
+import pr.user_relationships.dto.UserSuggestion;
+import pr.user_relationships.entity.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Username prefix lookup for autocomplete. Usernames are kept in a sorted array,
+ * so the matches for a prefix are one contiguous range found by binary search.
+ * A segment tree over the scores yields the highest-scored users of that range
+ * in O(limit * log n) without scanning it.
+ * <p>
+ * Readers use an immutable view without locking; writers publish a new one.
+ * A change does not rebuild the sorted array: changed users go into a small
+ * sorted overlay, and their old entries are hidden in the array. Once the
+ * overlay outgrows about the square root of the array size, both are merged
+ * into a new array. A change then costs O(sqrt n) amortized instead of O(n),
+ * and a lookup scans at most the overlay on top of the tree search.
+ */
+@Component
+public class UsernameSuggestIndex implements UserIndex {
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing((Entry entry) -> entry.key)
+            .thenComparing(entry -> entry.id);
+
+    // Suggestion order; ties go to the alphabetically first username, as in the tree
+    private static final Comparator<Entry> BEST = Comparator
+            .comparingDouble((Entry entry) -> entry.score)
+            .reversed()
+            .thenComparing(ORDER);
+
+    private static final int MIN_OVERLAY = 64;
+
+    private volatile View view = new View(new Snapshot(new Entry[0]), new Entry[0], Set.of());
+
+    @Override
+    public synchronized void rebuild(Collection<User> users) {
+        Entry[] entries = users.stream().map(Entry::of).sorted(ORDER).toArray(Entry[]::new);
+        view = new View(new Snapshot(entries), new Entry[0], Set.of());
+    }
+
+    @Override
+    public synchronized void upsert(Collection<User> users) {
+        if (!users.isEmpty()) {
+            List<Entry> added = users.stream().map(Entry::of).sorted(ORDER).toList();
+            Set<String> replaced = new HashSet<>();
+            added.forEach(entry -> replaced.add(entry.id));
+            publish(replaced, added);
+        }
+    }
+
+    @Override
+    public synchronized void remove(Collection<String> userIds) {
+        if (!userIds.isEmpty()) {
+            publish(new HashSet<>(userIds), List.of());
+        }
+    }
+
+    // Usernames are unchanged, so the entries keep their order and only the tree is rebuilt
+    @Override
+    public synchronized void refreshScores(ToDoubleFunction<String> scores) {
+        View current = view;
+        Entry[] entries = merge(current.base.entries, current.hidden, Arrays.asList(current.overlay));
+        for (int i = 0; i < entries.length; i++) {
+            Entry entry = entries[i];
+            entries[i] = new Entry(entry.key, entry.id, entry.username, scores.applyAsDouble(entry.id));
+        }
+        view = new View(new Snapshot(entries), new Entry[0], Set.of());
+    }
+
+    // Drops the given ids from the overlay and hides them in the array, then adds the new entries
+    private void publish(Set<String> changed, List<Entry> added) {
+        View current = view;
+        Entry[] overlay = merge(current.overlay, changed, added);
+        Set<String> hidden = new HashSet<>(current.hidden);
+        hidden.addAll(changed);
+
+        Snapshot base = current.base;
+        int threshold = Math.max(MIN_OVERLAY, (int) Math.sqrt(base.entries.length));
+        if (overlay.length + hidden.size() > threshold) {
+            base = new Snapshot(merge(base.entries, hidden, Arrays.asList(overlay)));
+            overlay = new Entry[0];
+            hidden = Set.of();
+        }
+        view = new View(base, overlay, hidden);
+    }
+
+    /**
+     * Returns up to {@code limit} users whose username starts with the given
+     * prefix (case-insensitive), highest popularity score first.
+     */
+    public List<UserSuggestion> suggest(String prefix, int limit) {
+        View current = view;
+        String key = prefix.toLowerCase(Locale.ROOT);
+        String end = key + Character.MAX_VALUE;
+        Entry[] base = current.base.entries;
+        List<Entry> candidates = current.base.top(lowerBound(base, key), lowerBound(base, end), limit,
+                current.hidden);
+        if (current.overlay.length > 0) {
+            candidates.addAll(Arrays.asList(current.overlay)
+                    .subList(lowerBound(current.overlay, key), lowerBound(current.overlay, end)));
+            candidates.sort(BEST);
+        }
+
+        List<UserSuggestion> result = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (Entry entry : candidates.subList(0, Math.min(limit, candidates.size()))) {
+            result.add(UserSuggestion.builder()
+                    .id(entry.id)
+                    .username(entry.username)
+                    .popularityScore(entry.score)
+                    .build());
+        }
+        return result;
+    }
+
+    private static int lowerBound(Entry[] entries, String key) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid].key.compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Entry[] merge(Entry[] existing, Set<String> dropped, List<Entry> added) {
+        Entry[] merged = new Entry[existing.length + added.size()];
+        int size = 0;
+        int next = 0;
+        for (Entry entry : existing) {
+            if (dropped.contains(entry.id)) {
+                continue;
+            }
+            while (next < added.size() && ORDER.compare(added.get(next), entry) < 0) {
+                merged[size++] = added.get(next++);
+            }
+            merged[size++] = entry;
+        }
+        while (next < added.size()) {
+            merged[size++] = added.get(next++);
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String id;
+        private final String username;
+        private final double score;
+
+        private Entry(String key, String id, String username, double score) {
+            this.key = key;
+            this.id = id;
+            this.username = username;
+            this.score = score;
+        }
+
+        private static Entry of(User user) {
+            return new Entry(user.getUsername().toLowerCase(Locale.ROOT), user.getId(),
+                    user.getUsername(), user.getPopularityScore() == null ? 0.0 : user.getPopularityScore());
+        }
+    }
+
+    private static final class View {
+        private final Snapshot base;
+        // Entries changed since the base was built, sorted like the base
+        private final Entry[] overlay;
+        // Ids whose base entry is outdated or removed
+        private final Set<String> hidden;
+
+        private View(Snapshot base, Entry[] overlay, Set<String> hidden) {
+            this.base = base;
+            this.overlay = overlay;
+            this.hidden = hidden;
+        }
+    }
+
+    private static final class Snapshot {
+        private final Entry[] entries;
+        // Segment tree over entries: tree[node] is the index of the best entry below node
+        private final int[] tree;
+        private final int leaves;
+
+        private Snapshot(Entry[] entries) {
+            this.entries = entries;
+            int capacity = 1;
+            while (capacity < entries.length) {
+                capacity <<= 1;
+            }
+            this.leaves = capacity;
+            this.tree = new int[capacity * 2];
+            Arrays.fill(tree, -1);
+            for (int i = 0; i < entries.length; i++) {
+                tree[capacity + i] = i;
+            }
+            for (int node = capacity - 1; node > 0; node--) {
+                tree[node] = better(tree[node * 2], tree[node * 2 + 1]);
+            }
+        }
+
+        // Best entries of [from, to) in suggestion order, leaving out hidden ids
+        private List<Entry> top(int from, int to, int limit, Set<String> hidden) {
+            List<Entry> result = new ArrayList<>(Math.min(limit, Math.max(to - from, 0)));
+            if (from >= to || limit <= 0) {
+                return result;
+            }
+
+            // Max-heap of tree nodes fully inside [from, to), ordered by their best entry
+            PriorityQueue<Integer> nodes = new PriorityQueue<>(
+                    (a, b) -> better(tree[a], tree[b]) == tree[a] ? -1 : 1);
+            for (int low = from + leaves, high = to + leaves; low < high; low >>>= 1, high >>>= 1) {
+                if ((low & 1) == 1) {
+                    nodes.add(low++);
+                }
+                if ((high & 1) == 1) {
+                    nodes.add(--high);
+                }
+            }
+
+            while (!nodes.isEmpty() && result.size() < limit) {
+                int node = nodes.poll();
+                if (node >= leaves) {
+                    Entry entry = entries[tree[node]];
+                    if (!hidden.contains(entry.id)) {
+                        result.add(entry);
+                    }
+                } else {
+                    for (int child = node * 2; child <= node * 2 + 1; child++) {
+                        if (tree[child] >= 0) {
+                            nodes.add(child);
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        // Higher score wins; ties go to the alphabetically first username
+        private int better(int a, int b) {
+            if (a < 0) {
+                return b;
+            }
+            if (b < 0) {
+                return a;
+            }
+            int byScore = Double.compare(entries[a].score, entries[b].score);
+            if (byScore != 0) {
+                return byScore > 0 ? a : b;
+            }
+            return a <= b ? a : b;
+        }
+    }
+}
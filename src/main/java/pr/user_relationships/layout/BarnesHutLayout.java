@@ -0,0 +1,306 @@
+package pr.user_relationships.layout;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fruchterman-Reingold style force-directed layout. Repulsion between all node
+ * pairs is approximated with a Barnes-Hut quadtree, so an iteration costs
+ * O(n log n + m) instead of O(n^2). Forces for each iteration are computed in
+ * parallel on a fork-join pool; positions are updated in place.
+ */
+public class BarnesHutLayout {
+
+    static final double IDEAL_EDGE_LENGTH = 60.0;
+
+    private static final double GRAVITY = 0.01;
+    private static final double MIN_DISTANCE = 0.01;
+    private static final int PARALLEL_THRESHOLD = 512;
+
+    private final ForkJoinPool pool;
+    private final double theta;
+
+    public BarnesHutLayout(ForkJoinPool pool, double theta) {
+        this.pool = pool;
+        this.theta = theta;
+    }
+
+    /**
+     * Runs the layout for the given number of iterations.
+     *
+     * @param x           node x coordinates, updated in place
+     * @param y           node y coordinates, updated in place
+     * @param offsets     CSR offsets: neighbours of node i are targets[offsets[i]..offsets[i + 1])
+     * @param targets     CSR neighbour indexes
+     * @param iterations  number of iterations to run
+     * @param temperature maximum displacement of a node in the first iteration
+     */
+    public void run(double[] x, double[] y, int[] offsets, int[] targets, int iterations, double temperature) {
+        int n = x.length;
+        if (n < 2 || iterations <= 0) {
+            return;
+        }
+
+        double[] dispX = new double[n];
+        double[] dispY = new double[n];
+        double k2 = IDEAL_EDGE_LENGTH * IDEAL_EDGE_LENGTH;
+        double theta2 = theta * theta;
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            QuadTree tree = QuadTree.build(x, y);
+            double step = temperature * (1.0 - (double) iteration / iterations) + 0.5;
+
+            pool.invoke(new ForceTask(0, n, tree, x, y, offsets, targets, dispX, dispY, k2, theta2));
+
+            for (int i = 0; i < n; i++) {
+                double length = Math.sqrt(dispX[i] * dispX[i] + dispY[i] * dispY[i]);
+                if (length > 0) {
+                    double move = Math.min(length, step) / length;
+                    x[i] += dispX[i] * move;
+                    y[i] += dispY[i] * move;
+                }
+            }
+        }
+    }
+
+    private static final class ForceTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final QuadTree tree;
+        private final double[] x;
+        private final double[] y;
+        private final int[] offsets;
+        private final int[] targets;
+        private final double[] dispX;
+        private final double[] dispY;
+        private final double k2;
+        private final double theta2;
+
+        ForceTask(int from, int to, QuadTree tree, double[] x, double[] y, int[] offsets, int[] targets,
+                  double[] dispX, double[] dispY, double k2, double theta2) {
+            this.from = from;
+            this.to = to;
+            this.tree = tree;
+            this.x = x;
+            this.y = y;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.dispX = dispX;
+            this.dispY = dispY;
+            this.k2 = k2;
+            this.theta2 = theta2;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(
+                        new ForceTask(from, mid, tree, x, y, offsets, targets, dispX, dispY, k2, theta2),
+                        new ForceTask(mid, to, tree, x, y, offsets, targets, dispX, dispY, k2, theta2));
+                return;
+            }
+
+            int[] stack = new int[QuadTree.MAX_DEPTH * 3 + 8];
+            double[] force = new double[2];
+            for (int i = from; i < to; i++) {
+                force[0] = 0;
+                force[1] = 0;
+                tree.repulsion(i, x[i], y[i], k2, theta2, stack, force);
+
+                // Attraction along edges, f = d^2 / k
+                for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                    int j = targets[e];
+                    double dx = x[i] - x[j];
+                    double dy = y[i] - y[j];
+                    double distance = Math.sqrt(dx * dx + dy * dy);
+                    force[0] -= dx * distance / IDEAL_EDGE_LENGTH;
+                    force[1] -= dy * distance / IDEAL_EDGE_LENGTH;
+                }
+
+                // Weak pull to the origin keeps disconnected components from drifting away
+                dispX[i] = force[0] - GRAVITY * x[i];
+                dispY[i] = force[1] - GRAVITY * y[i];
+            }
+        }
+    }
+
+    /**
+     * Array-backed quadtree holding the mass and centre of mass of every cell.
+     */
+    static final class QuadTree {
+        static final int MAX_DEPTH = 24;
+
+        private static final int EMPTY = -1;
+        private static final int INTERNAL = -2;
+        private static final int AGGREGATE = -3;
+
+        private int count;
+        private double[] minX;
+        private double[] minY;
+        private double[] size;
+        private double[] mass;
+        private double[] sumX;
+        private double[] sumY;
+        private int[] body;
+        private int[] children;
+
+        private QuadTree(int capacity) {
+            minX = new double[capacity];
+            minY = new double[capacity];
+            size = new double[capacity];
+            mass = new double[capacity];
+            sumX = new double[capacity];
+            sumY = new double[capacity];
+            body = new int[capacity];
+            children = new int[capacity * 4];
+        }
+
+        static QuadTree build(double[] x, double[] y) {
+            double lowX = Double.MAX_VALUE, lowY = Double.MAX_VALUE;
+            double highX = -Double.MAX_VALUE, highY = -Double.MAX_VALUE;
+            for (int i = 0; i < x.length; i++) {
+                lowX = Math.min(lowX, x[i]);
+                lowY = Math.min(lowY, y[i]);
+                highX = Math.max(highX, x[i]);
+                highY = Math.max(highY, y[i]);
+            }
+
+            QuadTree tree = new QuadTree(Math.max(16, x.length * 2));
+            tree.addCell(lowX, lowY, Math.max(Math.max(highX - lowX, highY - lowY), 1.0) * 1.0001);
+            for (int i = 0; i < x.length; i++) {
+                tree.insert(i, x, y);
+            }
+            return tree;
+        }
+
+        private void insert(int newBody, double[] x, double[] y) {
+            double px = x[newBody];
+            double py = y[newBody];
+            int node = 0;
+            for (int depth = 0; ; depth++) {
+                mass[node] += 1;
+                sumX[node] += px;
+                sumY[node] += py;
+
+                int occupant = body[node];
+                if (occupant == EMPTY) {
+                    body[node] = newBody;
+                    return;
+                }
+                if (occupant == AGGREGATE) {
+                    return;
+                }
+                if (occupant >= 0) {
+                    if (depth >= MAX_DEPTH) {
+                        // Coincident points: keep them together as one aggregated leaf
+                        body[node] = AGGREGATE;
+                        return;
+                    }
+                    body[node] = INTERNAL;
+                    int child = childFor(node, x[occupant], y[occupant]);
+                    mass[child] += 1;
+                    sumX[child] += x[occupant];
+                    sumY[child] += y[occupant];
+                    body[child] = occupant;
+                }
+                node = childFor(node, px, py);
+            }
+        }
+
+        private int childFor(int node, double px, double py) {
+            double half = size[node] / 2;
+            int quadrant = (px >= minX[node] + half ? 1 : 0) + (py >= minY[node] + half ? 2 : 0);
+            int slot = node * 4 + quadrant;
+            if (children[slot] == 0) {
+                children[slot] = addCell(
+                        minX[node] + ((quadrant & 1) != 0 ? half : 0),
+                        minY[node] + ((quadrant & 2) != 0 ? half : 0),
+                        half);
+            }
+            return children[slot];
+        }
+
+        private int addCell(double cellX, double cellY, double cellSize) {
+            if (count == body.length) {
+                grow();
+            }
+            int cell = count++;
+            minX[cell] = cellX;
+            minY[cell] = cellY;
+            size[cell] = cellSize;
+            body[cell] = EMPTY;
+            return cell;
+        }
+
+        private void grow() {
+            int capacity = body.length * 2;
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            size = Arrays.copyOf(size, capacity);
+            mass = Arrays.copyOf(mass, capacity);
+            sumX = Arrays.copyOf(sumX, capacity);
+            sumY = Arrays.copyOf(sumY, capacity);
+            body = Arrays.copyOf(body, capacity);
+            children = Arrays.copyOf(children, capacity * 4);
+        }
+
+        /**
+         * Adds the repulsive force acting on node {@code self} to {@code force},
+         * f = k^2 / d per unit of mass.
+         */
+        void repulsion(int self, double px, double py, double k2, double theta2, int[] stack, double[] force) {
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                double cellMass = mass[node];
+                double cellX = sumX[node];
+                double cellY = sumY[node];
+                int occupant = body[node];
+
+                if (occupant == self) {
+                    continue;
+                }
+                boolean containsSelf = px >= minX[node] && px < minX[node] + size[node]
+                        && py >= minY[node] && py < minY[node] + size[node];
+                if (occupant == AGGREGATE && containsSelf) {
+                    // Exclude ourselves from this stack of coincident points
+                    cellMass -= 1;
+                    cellX -= px;
+                    cellY -= py;
+                }
+                if (cellMass <= 0) {
+                    continue;
+                }
+
+                double dx = px - cellX / cellMass;
+                double dy = py - cellY / cellMass;
+                double d2 = dx * dx + dy * dy;
+
+                // Cells that contain this node, or are too close to approximate, are opened
+                if (occupant == INTERNAL && (containsSelf || size[node] * size[node] >= theta2 * d2)) {
+                    for (int q = 0; q < 4; q++) {
+                        int child = children[node * 4 + q];
+                        if (child != 0) {
+                            stack[top++] = child;
+                        }
+                    }
+                    continue;
+                }
+
+                if (d2 < MIN_DISTANCE) {
+                    // Nudge overlapping nodes apart in a direction derived from the index
+                    double angle = self * 2.399963;
+                    dx = Math.cos(angle) * MIN_DISTANCE;
+                    dy = Math.sin(angle) * MIN_DISTANCE;
+                    d2 = MIN_DISTANCE * MIN_DISTANCE;
+                }
+                double factor = k2 * cellMass / d2;
+                force[0] += dx * factor;
+                force[1] += dy * factor;
+            }
+        }
+    }
+}
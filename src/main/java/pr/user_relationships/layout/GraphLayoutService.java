@@ -0,0 +1,222 @@
+package pr.user_relationships.layout;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pr.user_relationships.dto.Relationship;
+import pr.user_relationships.dto.UserDTO;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Computes and caches node positions for the relationship graph. The first
+ * layout starts from random positions; later calls reuse the cached positions
+ * and only run a short, low-temperature refinement when users or links changed.
+ * If less than half of the users have a cached position, the refinement could
+ * not untangle the new ones, so the full layout runs again from those seeds.
+ * <p>
+ * The full graph and filtered subgraphs are cached separately, each holding
+ * only the users of its last layout, so deleted users drop out and a filtered
+ * request never moves users in the full-graph layout.
+ */
+@Service
+@Slf4j
+public class GraphLayoutService {
+
+    // Share of users with a cached position needed to only refine the layout
+    static final double MIN_KNOWN_FRACTION = 0.5;
+
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private final BarnesHutLayout layout;
+    private final int iterations;
+    private final int refineIterations;
+
+    private Map<String, double[]> positions = new HashMap<>();
+    private long fingerprint;
+
+    // Last subgraph layout, seeded from the full-graph positions
+    private Map<String, double[]> subgraphPositions = new HashMap<>();
+    private long subgraphFingerprint;
+
+    public GraphLayoutService(
+            @Value("${app.layout.theta:0.8}") double theta,
+            @Value("${app.layout.iterations:300}") int iterations,
+            @Value("${app.layout.refine-iterations:40}") int refineIterations) {
+        this.layout = new BarnesHutLayout(pool, theta);
+        this.iterations = iterations;
+        this.refineIterations = refineIterations;
+    }
+
+    public void applyLayout(List<UserDTO> users, List<Relationship> relationships) {
+        applyLayout(users, relationships, false);
+    }
+
+    /**
+     * Sets {@code x}/{@code y} on every user, computing or refining the layout
+     * if the graph changed since the last call. Subgraphs are refined from the
+     * positions their users have in the full graph.
+     */
+    public synchronized void applyLayout(List<UserDTO> users, List<Relationship> relationships, boolean subgraph) {
+        long current = fingerprint(users, relationships);
+        Map<String, double[]> result;
+        if (subgraph) {
+            if (current != subgraphFingerprint) {
+                subgraphPositions = computeLayout(users, relationships, positions, subgraphPositions);
+                subgraphFingerprint = current;
+            }
+            result = subgraphPositions;
+        } else {
+            if (current != fingerprint) {
+                positions = computeLayout(users, relationships, positions, Map.of());
+                fingerprint = current;
+            }
+            result = positions;
+        }
+
+        for (UserDTO user : users) {
+            double[] point = result.get(user.getId());
+            user.setX(point[0]);
+            user.setY(point[1]);
+        }
+    }
+
+    // Seeds come from the primary positions first, then from the fallback ones
+    private Map<String, double[]> computeLayout(List<UserDTO> users, List<Relationship> relationships,
+                                                Map<String, double[]> seeds, Map<String, double[]> fallbackSeeds) {
+        long started = System.nanoTime();
+        int n = users.size();
+        Map<String, Integer> index = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            index.put(users.get(i).getId(), i);
+        }
+
+        int[] offsets = new int[n + 1];
+        int[][] pairs = new int[relationships.size()][];
+        int edges = 0;
+        for (Relationship relationship : relationships) {
+            Integer a = index.get(relationship.getUserId1());
+            Integer b = index.get(relationship.getUserId2());
+            if (a != null && b != null) {
+                pairs[edges++] = new int[]{a, b};
+                offsets[a + 1]++;
+                offsets[b + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] targets = new int[offsets[n]];
+        int[] fill = new int[n];
+        for (int e = 0; e < edges; e++) {
+            int a = pairs[e][0];
+            int b = pairs[e][1];
+            targets[offsets[a] + fill[a]++] = b;
+            targets[offsets[b] + fill[b]++] = a;
+        }
+
+        double[] x = new double[n];
+        double[] y = new double[n];
+        int known = seedPositions(users, offsets, targets, x, y, seeds, fallbackSeeds);
+
+        double spread = BarnesHutLayout.IDEAL_EDGE_LENGTH * Math.sqrt(n);
+        boolean warm = refinable(known, n);
+        if (warm) {
+            layout.run(x, y, offsets, targets, refineIterations, BarnesHutLayout.IDEAL_EDGE_LENGTH);
+        } else {
+            layout.run(x, y, offsets, targets, iterations, spread / 4);
+        }
+
+        Map<String, double[]> computed = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            computed.put(users.get(i).getId(), new double[]{x[i], y[i]});
+        }
+        log.debug("{} layout of {} users and {} links took {} ms", warm ? "Refined" : "Computed",
+                n, edges, (System.nanoTime() - started) / 1_000_000);
+        return computed;
+    }
+
+    /**
+     * Places users with a cached position where they were, new users next to
+     * their already placed friends, and everyone else randomly.
+     *
+     * @return the number of users that had a cached position
+     */
+    private static int seedPositions(List<UserDTO> users, int[] offsets, int[] targets, double[] x, double[] y,
+                                     Map<String, double[]> seeds, Map<String, double[]> fallbackSeeds) {
+        int n = users.size();
+        boolean[] placed = new boolean[n];
+        int known = 0;
+        for (int i = 0; i < n; i++) {
+            double[] cached = seeds.getOrDefault(users.get(i).getId(), fallbackSeeds.get(users.get(i).getId()));
+            if (cached != null) {
+                x[i] = cached[0];
+                y[i] = cached[1];
+                placed[i] = true;
+                known++;
+            }
+        }
+
+        double radius = BarnesHutLayout.IDEAL_EDGE_LENGTH * Math.sqrt(n);
+        for (int i = 0; i < n; i++) {
+            if (placed[i]) {
+                continue;
+            }
+            SplittableRandom random = new SplittableRandom(users.get(i).getId().hashCode());
+            int neighbours = 0;
+            double sumX = 0, sumY = 0;
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                if (placed[targets[e]]) {
+                    sumX += x[targets[e]];
+                    sumY += y[targets[e]];
+                    neighbours++;
+                }
+            }
+            double angle = random.nextDouble(2 * Math.PI);
+            if (neighbours > 0) {
+                x[i] = sumX / neighbours + Math.cos(angle) * BarnesHutLayout.IDEAL_EDGE_LENGTH;
+                y[i] = sumY / neighbours + Math.sin(angle) * BarnesHutLayout.IDEAL_EDGE_LENGTH;
+            } else {
+                double distance = radius * Math.sqrt(random.nextDouble());
+                x[i] = Math.cos(angle) * distance;
+                y[i] = Math.sin(angle) * distance;
+            }
+        }
+        return known;
+    }
+
+    static boolean refinable(int known, int size) {
+        return known > 0 && known >= size * MIN_KNOWN_FRACTION;
+    }
+
+    synchronized int cachedPositionCount() {
+        return positions.size() + subgraphPositions.size();
+    }
+
+    // Order-independent hash of the node and edge sets
+    private static long fingerprint(List<UserDTO> users, List<Relationship> relationships) {
+        long hash = users.size() * 31L + relationships.size();
+        for (UserDTO user : users) {
+            hash += mix(user.getId().hashCode());
+        }
+        for (Relationship relationship : relationships) {
+            hash += mix(relationship.getUserId1().hashCode() * 31L + relationship.getUserId2().hashCode());
+        }
+        return hash;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+}
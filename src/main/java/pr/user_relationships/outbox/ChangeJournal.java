@@ -0,0 +1,343 @@
+package pr.user_relationships.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+import pr.user_relationships.event.UserGraphChangedEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of change records in memory-mapped segment files.
+ * <p>
+ * A record is {@code [int bodyLength][int crc32(body)][body]}. The body is
+ * the change type, the timestamp, the user id, an optional other user id and
+ * the affected user ids, with ids stored as 16 bytes. Offsets are contiguous
+ * across segments. A segment is named after the offset of its first record,
+ * and a new one is started when the next record does not fit. Appends only
+ * copy into mapped memory. {@link #force()} makes them durable, and is left
+ * to the background publisher so the request path never waits on the disk.
+ * <p>
+ * Readers see the records up to each segment's published end, without locking.
+ * On open, the last segment is scanned and a torn tail left by a crash is cut off.
+ */
+@Slf4j
+public class ChangeJournal implements Closeable {
+
+    private static final String SUFFIX = ".journal";
+    private static final int HEADER = 2 * Integer.BYTES;
+    private static final int UUID_BYTES = 2 * Long.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    // Guarded by this
+    private Segment active;
+
+    public ChangeJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        // Two writers on one journal would overwrite each other's records
+        this.lockChannel = FileChannel.open(directory.resolve("journal.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            this.lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lockChannel.close();
+            throw new IllegalStateException("Change journal " + directory + " is already open", e);
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("Change journal " + directory + " is in use by another process");
+        }
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            Segment segment = Segment.open(file, segmentSize);
+            segments.put(segment.base, segment);
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(0);
+        } else {
+            active = segments.lastEntry().getValue();
+            active.sealedAt = null;
+        }
+        log.info("Opened change journal {} with {} segments, offsets {} to {}",
+                directory, segments.size(), startOffset(), endOffset());
+    }
+
+    /**
+     * @return the offset of the new record
+     */
+    public synchronized long append(UserGraphChangedEvent event, Instant timestamp) {
+        List<String> affected = event.getAffectedUserIds() == null ? List.of() : event.getAffectedUserIds();
+        boolean hasOther = event.getOtherUserId() != null;
+        int bodyLength = 1 + Long.BYTES + UUID_BYTES + 1 + (hasOther ? UUID_BYTES : 0)
+                + Integer.BYTES + affected.size() * UUID_BYTES;
+        int recordLength = HEADER + bodyLength;
+        if (recordLength > segmentSize) {
+            throw new IllegalArgumentException("Change record of " + recordLength
+                    + " bytes exceeds the journal segment size of " + segmentSize);
+        }
+        // Segments written under a different configured size keep their own capacity
+        if (active.end + recordLength > active.buffer.capacity()) {
+            rotate();
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int start = active.end;
+        int at = start + HEADER;
+        buffer.put(at, (byte) event.getType().ordinal());
+        buffer.putLong(at + 1, timestamp.toEpochMilli());
+        at = putUuid(buffer, at + 1 + Long.BYTES, event.getUserId());
+        buffer.put(at, (byte) (hasOther ? 1 : 0));
+        at++;
+        if (hasOther) {
+            at = putUuid(buffer, at, event.getOtherUserId());
+        }
+        buffer.putInt(at, affected.size());
+        at += Integer.BYTES;
+        for (String id : affected) {
+            at = putUuid(buffer, at, id);
+        }
+
+        buffer.putInt(start + Integer.BYTES, crc(buffer, start + HEADER, bodyLength));
+        buffer.putInt(start, bodyLength);
+        // Publishes the record to readers
+        active.end = start + recordLength;
+        return active.base + start;
+    }
+
+    /**
+     * Reads up to {@code maxRecords} records starting at {@code fromOffset}, which
+     * must be a record boundary such as a {@link ChangeRecord#getNextOffset()}.
+     * Offsets before the oldest retained segment start at the oldest record.
+     */
+    public List<ChangeRecord> read(long fromOffset, int maxRecords) {
+        List<ChangeRecord> records = new ArrayList<>();
+        long offset = Math.max(fromOffset, startOffset());
+        Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+        while (entry != null && records.size() < maxRecords) {
+            Segment segment = entry.getValue();
+            int end = segment.end;
+            int position = (int) (offset - segment.base);
+            if (position >= end) {
+                entry = segments.higherEntry(entry.getKey());
+                if (entry != null) {
+                    offset = entry.getKey();
+                }
+                continue;
+            }
+            ChangeRecord record = decode(segment, position, end);
+            if (record == null) {
+                throw new IllegalArgumentException("No change record starts at offset " + offset);
+            }
+            records.add(record);
+            offset = record.getNextOffset();
+        }
+        return records;
+    }
+
+    public long startOffset() {
+        Map.Entry<Long, Segment> first = segments.firstEntry();
+        return first == null ? 0 : first.getKey();
+    }
+
+    public long endOffset() {
+        Map.Entry<Long, Segment> last = segments.lastEntry();
+        return last == null ? 0 : last.getKey() + last.getValue().end;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Writes appended records through to disk.
+     */
+    public void force() {
+        Segment current;
+        synchronized (this) {
+            current = active;
+        }
+        current.buffer.force();
+    }
+
+    /**
+     * Deletes the oldest sealed segments as long as all their records lie before
+     * {@code offset} and the segment was sealed before {@code sealedBefore}.
+     *
+     * @return the number of deleted segments
+     */
+    public synchronized int deleteSegments(long offset, Instant sealedBefore) {
+        int deleted = 0;
+        for (Segment segment : segments.values()) {
+            if (segment == active || segment.base + segment.end > offset
+                    || segment.sealedAt == null || !segment.sealedAt.isBefore(sealedBefore)) {
+                break;
+            }
+            segments.remove(segment.base);
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            deleted++;
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.buffer.force();
+        lock.release();
+        lockChannel.close();
+    }
+
+    private void rotate() {
+        active.buffer.force();
+        active.sealedAt = Instant.now();
+        active = createSegment(active.base + active.end);
+    }
+
+    private Segment createSegment(long base) {
+        try {
+            Segment segment = Segment.open(directory.resolve(String.format("%020d%s", base, SUFFIX)), segmentSize);
+            segments.put(base, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ChangeRecord decode(Segment segment, int position, int end) {
+        ByteBuffer buffer = segment.buffer;
+        if (position + HEADER > end) {
+            return null;
+        }
+        int bodyLength = buffer.getInt(position);
+        if (bodyLength <= 0 || position + HEADER + bodyLength > end
+                || crc(buffer, position + HEADER, bodyLength) != buffer.getInt(position + Integer.BYTES)) {
+            return null;
+        }
+
+        int at = position + HEADER;
+        UserGraphChangedEvent.Type type = UserGraphChangedEvent.Type.values()[buffer.get(at)];
+        Instant timestamp = Instant.ofEpochMilli(buffer.getLong(at + 1));
+        at += 1 + Long.BYTES;
+        String userId = getUuid(buffer, at);
+        at += UUID_BYTES;
+        String otherUserId = null;
+        if (buffer.get(at++) == 1) {
+            otherUserId = getUuid(buffer, at);
+            at += UUID_BYTES;
+        }
+        int affectedCount = buffer.getInt(at);
+        at += Integer.BYTES;
+        List<String> affected = new ArrayList<>(affectedCount);
+        for (int i = 0; i < affectedCount; i++) {
+            affected.add(getUuid(buffer, at));
+            at += UUID_BYTES;
+        }
+        long offset = segment.base + position;
+        return new ChangeRecord(offset, offset + HEADER + bodyLength, timestamp, type, userId, otherUserId,
+                affected);
+    }
+
+    private static int putUuid(ByteBuffer buffer, int at, String id) {
+        UUID uuid = UUID.fromString(id);
+        buffer.putLong(at, uuid.getMostSignificantBits());
+        buffer.putLong(at + Long.BYTES, uuid.getLeastSignificantBits());
+        return at + UUID_BYTES;
+    }
+
+    private static String getUuid(ByteBuffer buffer, int at) {
+        return new UUID(buffer.getLong(at), buffer.getLong(at + Long.BYTES)).toString();
+    }
+
+    private static int crc(ByteBuffer buffer, int from, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(from + length).position(from));
+        return (int) crc.getValue();
+    }
+
+    private static final class Segment {
+
+        private final long base;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        // End of the published records; written by the appending thread only
+        private volatile int end;
+        // null while the segment is still written to
+        private volatile Instant sealedAt;
+
+        private Segment(long base, Path path, MappedByteBuffer buffer) {
+            this.base = base;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, int size) throws IOException {
+            String name = path.getFileName().toString();
+            long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            boolean existing = Files.exists(path);
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping stays valid after the channel is closed
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, existing ? channel.size() : size);
+            }
+            Segment segment = new Segment(base, path, buffer);
+            if (existing) {
+                segment.recover();
+                segment.sealedAt = Files.getLastModifiedTime(path).toInstant();
+            }
+            return segment;
+        }
+
+        // Finds the end of the valid records and clears anything half-written after it
+        private void recover() {
+            int position = 0;
+            ChangeRecord record;
+            end = buffer.capacity();
+            while ((record = decode(this, position, buffer.capacity())) != null) {
+                position = (int) (record.getNextOffset() - base);
+            }
+            end = position;
+            if (position + Integer.BYTES <= buffer.capacity() && buffer.getInt(position) != 0) {
+                log.warn("Discarding torn change record at offset {} in {}", base + position, path);
+                for (int i = position; i < buffer.capacity(); i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                buffer.force();
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package pr.user_relationships.outbox;
+
+import lombok.Value;
+import pr.user_relationships.event.UserGraphChangedEvent;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One mutation as read back from the {@link ChangeJournal}. The mutation's
+ * transaction may still have failed after the record was appended.
+ * Records are addressed by their journal offset; reading on from
+ * {@code nextOffset} continues after this record.
+ */
+@Value
+public class ChangeRecord {
+    long offset;
+    long nextOffset;
+    Instant timestamp;
+    UserGraphChangedEvent.Type type;
+    String userId;
+    String otherUserId;
+    List<String> affectedUserIds;
+}
@@ -0,0 +1,59 @@
+package pr.user_relationships.outbox;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pr.user_relationships.event.RemoteUserGraphChangedEvent;
+import pr.user_relationships.event.UserGraphChangedEvent;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Records every mutation made by {@code UserService} in the local
+ * {@link ChangeJournal}.
+ * <p>
+ * The record is appended just before the mutation's transaction commits. A
+ * committed change is therefore never missing from the journal. A commit that
+ * fails after the append leaves a record for a change that did not happen, and
+ * records carry no commit outcome. Consumers must treat a record only as a hint
+ * to re-read the named users, as {@code IndexMaintainer} does, so such a record
+ * only costs a redundant refresh.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.outbox", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(OutboxProperties.class)
+public class Outbox {
+
+    private final ChangeJournal journal;
+
+    public Outbox(OutboxProperties properties) throws IOException {
+        this.journal = new ChangeJournal(properties.getDirectory(), properties.getSegmentSize());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onUserGraphChanged(UserGraphChangedEvent event) {
+        // Changes from other instances are already in their own journal
+        if (event instanceof RemoteUserGraphChangedEvent) {
+            return;
+        }
+        journal.append(event, Instant.now());
+    }
+
+    public List<ChangeRecord> read(long fromOffset, int maxRecords) {
+        return journal.read(fromOffset, maxRecords);
+    }
+
+    ChangeJournal journal() {
+        return journal;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        journal.close();
+    }
+}
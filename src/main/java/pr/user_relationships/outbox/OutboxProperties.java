@@ -0,0 +1,31 @@
+package pr.user_relationships.outbox;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+
+@Data
+@ConfigurationProperties("app.outbox")
+public class OutboxProperties {
+
+    private boolean enabled = true;
+
+    // Locked by one instance at a time, so there is no shared default; application.properties
+    // derives one from the server port, which also stays the same across restarts
+    private Path directory;
+
+    private int segmentSize = 64 * 1024 * 1024;
+
+    // Records handed to consumers per published batch
+    private int batchSize = 500;
+
+    // Sealed segments are deleted once fully published and older than this
+    private Duration retention = Duration.ofDays(7);
+
+    public Path getDirectory() {
+        return Objects.requireNonNull(directory, "app.outbox.directory is not set");
+    }
+}
@@ -0,0 +1,157 @@
+package pr.user_relationships.outbox;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import pr.user_relationships.event.ChangeJournalBatchEvent;
+import pr.user_relationships.exception.BadRequestException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Hands the records of the {@link Outbox} journal to consumers as
+ * {@link ChangeJournalBatchEvent}s, in journal order.
+ * <p>
+ * Each run first forces the journal to disk, so a record is only published
+ * once it is durable. The offset of the next unpublished record is stored in
+ * {@code publisher.offset} next to the segments after every batch. A batch
+ * whose consumers fail is retried on the next run, and a crash between
+ * publishing and storing the offset publishes the batch again. Delivery is
+ * therefore at least once.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.outbox", name = "enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class OutboxPublisher {
+
+    private static final String OFFSET_FILE = "publisher.offset";
+
+    private final ChangeJournal journal;
+    private final OutboxProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Path offsetFile;
+
+    // Guarded by this
+    private long publishedOffset;
+
+    public OutboxPublisher(Outbox outbox, OutboxProperties properties, ApplicationEventPublisher eventPublisher) {
+        this.journal = outbox.journal();
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.offsetFile = properties.getDirectory().resolve(OFFSET_FILE);
+        this.publishedOffset = Math.min(loadOffset(), journal.endOffset());
+        log.info("Publishing change journal from offset {}", publishedOffset);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.publish-interval-ms:200}")
+    public synchronized void publish() {
+        // Records appended after the force are left for the next run
+        long durableOffset = journal.endOffset();
+        if (publishedOffset >= durableOffset) {
+            return;
+        }
+        journal.force();
+        while (publishedOffset < durableOffset) {
+            List<ChangeRecord> records = journal.read(publishedOffset, properties.getBatchSize()).stream()
+                    .filter(record -> record.getOffset() < durableOffset)
+                    .toList();
+            if (records.isEmpty()) {
+                return;
+            }
+            long nextOffset = records.get(records.size() - 1).getNextOffset();
+            try {
+                eventPublisher.publishEvent(new ChangeJournalBatchEvent(records, nextOffset));
+            } catch (RuntimeException e) {
+                log.warn("Consumer failed on change records from offset {}, retrying", publishedOffset, e);
+                return;
+            }
+            publishedOffset = nextOffset;
+            storeOffset(nextOffset);
+        }
+    }
+
+    /**
+     * Publishes the journal again starting at {@code fromOffset}, which must be a
+     * record offset. Offsets of deleted segments start at the oldest retained record.
+     *
+     * @return the status right after moving the published offset
+     */
+    public synchronized Status replayFrom(long fromOffset) {
+        if (fromOffset < 0 || fromOffset > journal.endOffset()) {
+            throw new BadRequestException("Offset " + fromOffset + " is outside the change journal (0 to "
+                    + journal.endOffset() + ")");
+        }
+        long offset = Math.max(fromOffset, journal.startOffset());
+        try {
+            journal.read(offset, 1);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        log.info("Replaying change journal from offset {} (was at {})", offset, publishedOffset);
+        publishedOffset = offset;
+        storeOffset(offset);
+        return status();
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.retention-check-interval-ms:600000}")
+    public void deleteExpiredSegments() {
+        long offset;
+        synchronized (this) {
+            offset = publishedOffset;
+        }
+        int deleted = journal.deleteSegments(offset, Instant.now().minus(properties.getRetention()));
+        if (deleted > 0) {
+            log.info("Deleted {} change journal segments, journal now starts at offset {}",
+                    deleted, journal.startOffset());
+        }
+    }
+
+    public synchronized Status status() {
+        return Status.builder()
+                .startOffset(journal.startOffset())
+                .endOffset(journal.endOffset())
+                .publishedOffset(publishedOffset)
+                .segments(journal.segmentCount())
+                .build();
+    }
+
+    private long loadOffset() {
+        try {
+            return Files.exists(offsetFile)
+                    ? Long.parseLong(Files.readString(offsetFile, StandardCharsets.US_ASCII).trim())
+                    : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void storeOffset(long offset) {
+        Path partial = offsetFile.resolveSibling(OFFSET_FILE + ".part");
+        try {
+            Files.writeString(partial, Long.toString(offset), StandardCharsets.US_ASCII);
+            Files.move(partial, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Data
+    @Builder
+    public static class Status {
+        private long startOffset;
+        private long endOffset;
+        private long publishedOffset;
+        private int segments;
+    }
+}
@@ -0,0 +1,113 @@
+package pr.user_relationships.profile;
+
+import lombok.extern.slf4j.Slf4j;
+import pr.user_relationships.exception.ServiceUnavailableException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the parts of one request concurrently and joins each against its own
+ * deadline, measured from when the scope was opened. A part that misses its
+ * deadline or fails is cancelled and reported by name instead of failing the
+ * request, unless it was joined as required. Closing the scope cancels every
+ * part still running, so no work outlives the request.
+ */
+@Slf4j
+final class PartScope implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final long openedAt = System.nanoTime();
+    private final List<Part<?>> parts = new ArrayList<>();
+    private final List<String> incomplete = new ArrayList<>();
+
+    PartScope(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    <T> Part<T> fork(String name, Duration deadline, Callable<T> task) {
+        Part<T> part = new Part<>(name, openedAt + deadline.toNanos(), executor.submit(task));
+        parts.add(part);
+        return part;
+    }
+
+    /**
+     * Names of the parts that were joined optionally and came back without a result.
+     */
+    List<String> incompleteParts() {
+        return List.copyOf(incomplete);
+    }
+
+    @Override
+    public void close() {
+        for (Part<?> part : parts) {
+            part.future.cancel(true);
+        }
+    }
+
+    final class Part<T> {
+
+        private final String name;
+        private final long deadline;
+        private final Future<T> future;
+
+        private Part(String name, long deadline, Future<T> future) {
+            this.name = name;
+            this.deadline = deadline;
+            this.future = future;
+        }
+
+        /**
+         * Waits for the result; a failure is rethrown and a missed deadline
+         * becomes a {@link ServiceUnavailableException}.
+         */
+        T join() {
+            try {
+                return await();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IllegalStateException("Profile part '" + name + "' failed", e.getCause());
+            } catch (TimeoutException e) {
+                throw new ServiceUnavailableException("Timed out loading " + name);
+            }
+        }
+
+        /**
+         * Waits for the result, or returns null and records the part as
+         * incomplete if it failed or missed its deadline.
+         */
+        T joinOrNull() {
+            try {
+                return await();
+            } catch (ExecutionException e) {
+                log.warn("Profile part '{}' failed", name, e.getCause());
+            } catch (TimeoutException e) {
+                log.debug("Profile part '{}' missed its deadline", name);
+            }
+            incomplete.add(name);
+            return null;
+        }
+
+        private T await() throws ExecutionException, TimeoutException {
+            try {
+                return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                throw new ServiceUnavailableException("Interrupted while loading " + name);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                throw e;
+            }
+        }
+    }
+}
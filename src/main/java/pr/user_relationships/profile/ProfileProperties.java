@@ -0,0 +1,22 @@
+package pr.user_relationships.profile;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("app.profile")
+public class ProfileProperties {
+
+    // Worker threads shared by the parts of all profile requests
+    private int threads = 32;
+
+    // Deadlines per part, measured from the start of the request
+    private Duration userTimeout = Duration.ofMillis(500);
+    private Duration friendsTimeout = Duration.ofMillis(500);
+    private Duration mutualFriendsTimeout = Duration.ofMillis(500);
+    private Duration suggestionsTimeout = Duration.ofMillis(800);
+
+    private int maxSuggestions = 10;
+}
@@ -0,0 +1,135 @@
+package pr.user_relationships.profile;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pr.user_relationships.dto.FriendSuggestion;
+import pr.user_relationships.dto.UserDTO;
+import pr.user_relationships.dto.UserProfile;
+import pr.user_relationships.dto.UserSuggestion;
+import pr.user_relationships.repository.UserRepository;
+import pr.user_relationships.scoring.PopularityScores;
+import pr.user_relationships.service.UserService;
+import pr.user_relationships.store.OffHeapGraphStore;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Assembles a {@link UserProfile} from independent parts loaded concurrently,
+ * each against its own deadline. Parts reading the database use their own
+ * read-only transaction; mutual friends and suggestion candidates come from
+ * the {@link OffHeapGraphStore}. The user itself is required; the other parts
+ * are left out and listed in {@code incompleteParts} when they fail or are late.
+ */
+@Service
+@EnableConfigurationProperties(ProfileProperties.class)
+@Slf4j
+public class UserProfileService {
+
+    private final ProfileProperties properties;
+    private final UserService userService;
+    private final UserRepository userRepository;
+    private final PopularityScores popularityScores;
+    private final OffHeapGraphStore graphStore;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService executor;
+
+    public UserProfileService(ProfileProperties properties,
+                              UserService userService,
+                              UserRepository userRepository,
+                              PopularityScores popularityScores,
+                              OffHeapGraphStore graphStore,
+                              PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.userService = userService;
+        this.userRepository = userRepository;
+        this.popularityScores = popularityScores;
+        this.graphStore = graphStore;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(properties.getThreads(), task -> {
+            Thread thread = new Thread(task, "profile-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public UserProfile getProfile(String rawId) {
+        String id = UserService.canonicalUserId(rawId);
+        try (PartScope scope = new PartScope(executor)) {
+            PartScope.Part<UserDTO> user = scope.fork("user", properties.getUserTimeout(),
+                    () -> userService.getUserById(id));
+            PartScope.Part<List<UserSuggestion>> friends = scope.fork("friends", properties.getFriendsTimeout(),
+                    () -> readOnlyTransaction.execute(status -> loadFriends(id)));
+            PartScope.Part<Map<String, Integer>> mutualFriends = scope.fork("mutualFriendCounts",
+                    properties.getMutualFriendsTimeout(),
+                    () -> graphStore.mutualFriendCounts(id));
+            PartScope.Part<List<FriendSuggestion>> suggestions = scope.fork("suggestions",
+                    properties.getSuggestionsTimeout(),
+                    () -> readOnlyTransaction.execute(status -> loadSuggestions(id)));
+
+            // An unknown user fails here and closing the scope cancels the other parts
+            UserDTO profileUser = user.join();
+            return UserProfile.builder()
+                    .user(profileUser)
+                    .friends(friends.joinOrNull())
+                    .mutualFriendCounts(mutualFriends.joinOrNull())
+                    .suggestions(suggestions.joinOrNull())
+                    .incompleteParts(scope.incompleteParts())
+                    .build();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private List<UserSuggestion> loadFriends(String id) {
+        return userRepository.findAllById(userRepository.findFriendIds(id)).stream()
+                .map(friend -> UserSuggestion.builder()
+                        .id(friend.getId())
+                        .username(friend.getUsername())
+                        .popularityScore(popularityScores.scoreOf(friend))
+                        .build())
+                .sorted(Comparator.comparing(UserSuggestion::getPopularityScore).reversed()
+                        .thenComparing(UserSuggestion::getUsername))
+                .collect(Collectors.toList());
+    }
+
+    // Candidates come from the in-memory graph; only their usernames are read from the database
+    private List<FriendSuggestion> loadSuggestions(String id) {
+        List<OffHeapGraphStore.FriendCandidate> candidates =
+                graphStore.suggestFriends(id, properties.getMaxSuggestions());
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        Map<String, String> usernames = new HashMap<>();
+        for (Object[] row : userRepository.findUsernames(candidates.stream()
+                .map(OffHeapGraphStore.FriendCandidate::id)
+                .collect(Collectors.toList()))) {
+            usernames.put((String) row[0], (String) row[1]);
+        }
+        return candidates.stream()
+                .filter(candidate -> usernames.containsKey(candidate.id()))
+                .map(candidate -> FriendSuggestion.builder()
+                        .id(candidate.id())
+                        .username(usernames.get(candidate.id()))
+                        .mutualFriends(candidate.mutualFriends())
+                        .sharedHobbies(candidate.sharedHobbies())
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
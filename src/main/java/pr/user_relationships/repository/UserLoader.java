@@ -0,0 +1,101 @@
+package pr.user_relationships.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import pr.user_relationships.entity.User;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Loads users without cascading into their EAGER hobbies and friends. Each
+ * table is read with plain IN-list queries of at most {@value #CHUNK_SIZE}
+ * ids, so the number of statements depends on how many users are asked for,
+ * not on how they are connected. The rows are assembled into detached users
+ * whose friends are stubs holding only their id.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserLoader {
+
+    public static final int CHUNK_SIZE = 500;
+
+    private final UserRepository userRepository;
+
+    /**
+     * The given users that exist, in no particular order.
+     */
+    public List<User> findAllById(Collection<String> ids) {
+        return load(ids, false);
+    }
+
+    /**
+     * Like {@link #findAllById}, but the friend stubs also carry their hobbies,
+     * so the users can be scored.
+     */
+    public List<User> findAllWithFriendHobbiesById(Collection<String> ids) {
+        return load(ids, true);
+    }
+
+    private List<User> load(Collection<String> ids, boolean withFriendHobbies) {
+        Map<String, User> users = new LinkedHashMap<>();
+        for (Object[] row : inChunks(new ArrayList<>(new LinkedHashSet<>(ids)), userRepository::findUserRows)) {
+            String id = (String) row[0];
+            users.put(id, User.builder()
+                    .id(id)
+                    .username((String) row[1])
+                    .age((Integer) row[2])
+                    .hobbies(new ArrayList<>())
+                    .createdAt(toLocalDateTime(row[3]))
+                    .build());
+        }
+        if (users.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> found = new ArrayList<>(users.keySet());
+        Map<String, User> friends = new HashMap<>();
+        for (Object[] row : inChunks(found, userRepository::findFriendshipRows)) {
+            User lower = node(users, friends, (String) row[0]);
+            User higher = node(users, friends, (String) row[1]);
+            lower.addFriend(higher);
+        }
+
+        List<String> withHobbies = new ArrayList<>(found);
+        if (withFriendHobbies) {
+            withHobbies.addAll(friends.keySet());
+        }
+        for (Object[] row : inChunks(withHobbies, userRepository::findHobbyRows)) {
+            node(users, friends, (String) row[0]).getHobbies().add((String) row[1]);
+        }
+        return new ArrayList<>(users.values());
+    }
+
+    private static User node(Map<String, User> users, Map<String, User> friends, String id) {
+        User user = users.get(id);
+        if (user != null) {
+            return user;
+        }
+        return friends.computeIfAbsent(id, key -> User.builder().id(key).hobbies(new ArrayList<>()).build());
+    }
+
+    private static List<Object[]> inChunks(List<String> ids, Function<List<String>, List<Object[]>> query) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            rows.addAll(query.apply(ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()))));
+        }
+        return rows;
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        return value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) value;
+    }
+}
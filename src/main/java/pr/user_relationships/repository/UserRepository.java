@@ -2,9 +2,12 @@ package pr.user_relationships.repository;
 
 import pr.user_relationships.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,7 +17,77 @@ public interface UserRepository extends JpaRepository<User, String> {
 
     boolean existsByUsername(String username);
 
-    @Query("SELECT CASE WHEN COUNT(u) > 0 THEN true ELSE false END " +
-            "FROM User u JOIN u.friends f WHERE u.id = :userId OR f.id = :userId")
+    @Query(value = "SELECT EXISTS (" +
+            "SELECT 1 FROM user_friends WHERE user_id1 = CAST(:userId AS uuid) " +
+            "UNION ALL " +
+            "SELECT 1 FROM user_friends WHERE user_id2 = CAST(:userId AS uuid))",
+            nativeQuery = true)
     boolean hasAnyFriendships(String userId);
-}
\ No newline at end of file
+
+    // Friendships are stored once per pair; the database orders the ids so the
+    // row always satisfies user_id1 < user_id2 regardless of argument order
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO user_friends (user_id1, user_id2) " +
+            "VALUES (LEAST(CAST(:userId AS uuid), CAST(:friendId AS uuid)), " +
+            "GREATEST(CAST(:userId AS uuid), CAST(:friendId AS uuid))) " +
+            "ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    int insertFriendship(String userId, String friendId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM user_friends " +
+            "WHERE user_id1 = LEAST(CAST(:userId AS uuid), CAST(:friendId AS uuid)) " +
+            "AND user_id2 = GREATEST(CAST(:userId AS uuid), CAST(:friendId AS uuid))",
+            nativeQuery = true)
+    int deleteFriendship(String userId, String friendId);
+
+    @Query(value = "SELECT CAST(user_id2 AS varchar) FROM user_friends WHERE user_id1 = CAST(:userId AS uuid) " +
+            "UNION ALL " +
+            "SELECT CAST(user_id1 AS varchar) FROM user_friends WHERE user_id2 = CAST(:userId AS uuid)",
+            nativeQuery = true)
+    List<String> findFriendIds(String userId);
+
+    @Query(value = "SELECT CAST(id AS varchar), username FROM users WHERE id IN (:userIds)", nativeQuery = true)
+    List<Object[]> findUsernames(Collection<String> userIds);
+
+    // Row reads for UserLoader, which assembles users without the EAGER associations
+    @Query(value = "SELECT CAST(id AS varchar), username, age, created_at FROM users WHERE id IN (:userIds)",
+            nativeQuery = true)
+    List<Object[]> findUserRows(Collection<String> userIds);
+
+    @Query(value = "SELECT CAST(user_id AS varchar), hobby FROM user_hobbies WHERE user_id IN (:userIds)",
+            nativeQuery = true)
+    List<Object[]> findHobbyRows(Collection<String> userIds);
+
+    @Query(value = "SELECT CAST(user_id1 AS varchar), CAST(user_id2 AS varchar) FROM user_friends " +
+            "WHERE user_id1 IN (:userIds) " +
+            "UNION ALL " +
+            "SELECT CAST(user_id1 AS varchar), CAST(user_id2 AS varchar) FROM user_friends " +
+            "WHERE user_id2 IN (:userIds) AND user_id1 NOT IN (:userIds)",
+            nativeQuery = true)
+    List<Object[]> findFriendshipRows(Collection<String> userIds);
+
+    // Set-based cleanup used by cascade deletes: one statement per table, each
+    // served by the user_friends indexes / idx_user_hobbies_user
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM user_friends " +
+            "WHERE user_id1 = CAST(:userId AS uuid) OR user_id2 = CAST(:userId AS uuid)",
+            nativeQuery = true)
+    int deleteAllFriendships(String userId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM user_hobbies WHERE user_id = CAST(:userId AS uuid)", nativeQuery = true)
+    int deleteHobbies(String userId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM users WHERE id = CAST(:userId AS uuid)", nativeQuery = true)
+    int deleteUserRow(String userId);
+
+    // Whole-graph reads for background scoring, without loading User entities
+    @Query(value = "SELECT CAST(id AS varchar) FROM users", nativeQuery = true)
+    List<String> findAllIds();
+
+    @Query(value = "SELECT CAST(user_id1 AS varchar), CAST(user_id2 AS varchar) FROM user_friends",
+            nativeQuery = true)
+    List<Object[]> findAllFriendships();
+}
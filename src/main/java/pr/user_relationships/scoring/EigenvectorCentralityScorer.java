@@ -0,0 +1,77 @@
+package pr.user_relationships.scoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Eigenvector centrality: a user is popular when their friends are popular.
+ * Computed by power iteration on {@code A + I}, which has the same leading
+ * eigenvector as the adjacency matrix {@code A} but does not oscillate on
+ * bipartite graphs. Scores are scaled so the average is 1.
+ */
+@Component
+@RequiredArgsConstructor
+public class EigenvectorCentralityScorer implements GraphPopularityScorer {
+
+    public static final String NAME = "eigenvector";
+
+    private final PopularityProperties properties;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public double[] score(FriendGraph graph, ForkJoinPool pool) {
+        int n = graph.size();
+        double[] centrality = new double[n];
+        if (graph.edgeCount() == 0) {
+            return centrality;
+        }
+        double[] next = new double[n];
+        Arrays.fill(centrality, 1.0 / Math.sqrt(n));
+
+        for (int iteration = 0; iteration < properties.getMaxIterations(); iteration++) {
+            double[] current = centrality;
+            double[] updated = next;
+            double squaredNorm = ParallelLoops.sum(pool, n, (from, to) -> {
+                double squares = 0;
+                for (int v = from; v < to; v++) {
+                    double sum = current[v];
+                    for (int p = graph.neighborStart(v); p < graph.neighborEnd(v); p++) {
+                        sum += current[graph.neighborAt(p)];
+                    }
+                    updated[v] = sum;
+                    squares += sum * sum;
+                }
+                return squares;
+            });
+
+            double norm = Math.sqrt(squaredNorm);
+            double change = ParallelLoops.sum(pool, n, (from, to) -> {
+                double delta = 0;
+                for (int v = from; v < to; v++) {
+                    updated[v] /= norm;
+                    delta += Math.abs(updated[v] - current[v]);
+                }
+                return delta;
+            });
+
+            next = centrality;
+            centrality = updated;
+            if (change < properties.getTolerance()) {
+                break;
+            }
+        }
+
+        double total = Arrays.stream(centrality).sum();
+        for (int v = 0; v < n; v++) {
+            centrality[v] = centrality[v] * n / total;
+        }
+        return centrality;
+    }
+}
@@ -0,0 +1,103 @@
+package pr.user_relationships.scoring;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable undirected friendship graph in compressed sparse row form: the
+ * neighbours of node {@code v} are {@code neighbors[offsets[v] .. offsets[v + 1])}.
+ * Nodes are numbered in the order of the ids passed to {@link #build}.
+ */
+public final class FriendGraph {
+
+    private final String[] ids;
+    private final Map<String, Integer> indexById;
+    private final int[] offsets;
+    private final int[] neighbors;
+
+    private FriendGraph(String[] ids, Map<String, Integer> indexById, int[] offsets, int[] neighbors) {
+        this.ids = ids;
+        this.indexById = indexById;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    /**
+     * @param edges {@code [userId1, userId2]} pairs, one per friendship; pairs naming
+     *              unknown users (e.g. created after the ids were read) are skipped
+     */
+    public static FriendGraph build(List<String> userIds, List<Object[]> edges) {
+        String[] ids = userIds.toArray(new String[0]);
+        Map<String, Integer> indexById = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            indexById.put(ids[i], i);
+        }
+
+        int[] from = new int[edges.size()];
+        int[] to = new int[edges.size()];
+        int edgeCount = 0;
+        int[] degree = new int[ids.length];
+        for (Object[] edge : edges) {
+            Integer a = indexById.get((String) edge[0]);
+            Integer b = indexById.get((String) edge[1]);
+            if (a == null || b == null || a.equals(b)) {
+                continue;
+            }
+            from[edgeCount] = a;
+            to[edgeCount] = b;
+            edgeCount++;
+            degree[a]++;
+            degree[b]++;
+        }
+
+        int[] offsets = new int[ids.length + 1];
+        for (int v = 0; v < ids.length; v++) {
+            offsets[v + 1] = offsets[v] + degree[v];
+        }
+        int[] next = Arrays.copyOf(offsets, ids.length);
+        int[] neighbors = new int[offsets[ids.length]];
+        for (int e = 0; e < edgeCount; e++) {
+            neighbors[next[from[e]]++] = to[e];
+            neighbors[next[to[e]]++] = from[e];
+        }
+        return new FriendGraph(ids, indexById, offsets, neighbors);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int edgeCount() {
+        return neighbors.length / 2;
+    }
+
+    public String idOf(int node) {
+        return ids[node];
+    }
+
+    /**
+     * @return the node index of the user, or -1 if the user is not in the graph
+     */
+    public int indexOf(String userId) {
+        Integer index = indexById.get(userId);
+        return index == null ? -1 : index;
+    }
+
+    public int degree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    public int neighborStart(int node) {
+        return offsets[node];
+    }
+
+    public int neighborEnd(int node) {
+        return offsets[node + 1];
+    }
+
+    public int neighborAt(int position) {
+        return neighbors[position];
+    }
+}
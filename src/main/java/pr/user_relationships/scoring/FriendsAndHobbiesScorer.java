@@ -0,0 +1,36 @@
+package pr.user_relationships.scoring;
+
+import org.springframework.stereotype.Component;
+import pr.user_relationships.entity.User;
+
+import java.util.Set;
+
+/**
+ * The original score: one point per friend plus half a point for every hobby
+ * shared with a friend.
+ */
+@Component
+public class FriendsAndHobbiesScorer implements LocalPopularityScorer {
+
+    public static final String NAME = "default";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public double score(User user) {
+        Set<User> friends = user.getFriends();
+        double sharedHobbiesScore = 0.0;
+
+        for (User friend : friends) {
+            long sharedHobbies = user.getHobbies().stream()
+                    .filter(hobby -> friend.getHobbies().contains(hobby))
+                    .count();
+            sharedHobbiesScore += sharedHobbies;
+        }
+
+        return friends.size() + (sharedHobbiesScore * 0.5);
+    }
+}
@@ -0,0 +1,15 @@
+package pr.user_relationships.scoring;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Scorer that needs the whole friendship graph. Scores are recomputed in the
+ * background and served from the last completed run.
+ */
+public interface GraphPopularityScorer extends PopularityScorer {
+
+    /**
+     * @return one score per node of {@code graph}, indexed like the graph's nodes
+     */
+    double[] score(FriendGraph graph, ForkJoinPool pool);
+}
@@ -0,0 +1,12 @@
+package pr.user_relationships.scoring;
+
+import pr.user_relationships.entity.User;
+
+/**
+ * Scorer whose result only depends on a user and their direct friends, so it
+ * can be evaluated whenever a user is loaded.
+ */
+public interface LocalPopularityScorer extends PopularityScorer {
+
+    double score(User user);
+}
@@ -0,0 +1,79 @@
+package pr.user_relationships.scoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * PageRank over the undirected friendship graph, scaled by the number of users
+ * so the average score is 1. Rank of users without friends is spread evenly,
+ * as for dangling pages.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageRankScorer implements GraphPopularityScorer {
+
+    public static final String NAME = "pagerank";
+
+    private final PopularityProperties properties;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public double[] score(FriendGraph graph, ForkJoinPool pool) {
+        int n = graph.size();
+        double damping = properties.getDamping();
+        double[] rank = new double[n];
+        double[] next = new double[n];
+        double[] contribution = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+
+        for (int iteration = 0; iteration < properties.getMaxIterations(); iteration++) {
+            double[] current = rank;
+            double danglingRank = ParallelLoops.sum(pool, n, (from, to) -> {
+                double dangling = 0;
+                for (int v = from; v < to; v++) {
+                    int degree = graph.degree(v);
+                    if (degree == 0) {
+                        dangling += current[v];
+                    } else {
+                        contribution[v] = current[v] / degree;
+                    }
+                }
+                return dangling;
+            });
+
+            double base = (1 - damping) / n + damping * danglingRank / n;
+            double[] updated = next;
+            // Pull-based: each node only writes its own entry
+            double change = ParallelLoops.sum(pool, n, (from, to) -> {
+                double delta = 0;
+                for (int v = from; v < to; v++) {
+                    double sum = 0;
+                    for (int p = graph.neighborStart(v); p < graph.neighborEnd(v); p++) {
+                        sum += contribution[graph.neighborAt(p)];
+                    }
+                    updated[v] = base + damping * sum;
+                    delta += Math.abs(updated[v] - current[v]);
+                }
+                return delta;
+            });
+
+            next = rank;
+            rank = updated;
+            if (change < properties.getTolerance()) {
+                break;
+            }
+        }
+
+        for (int v = 0; v < n; v++) {
+            rank[v] *= n;
+        }
+        return rank;
+    }
+}
@@ -0,0 +1,53 @@
+package pr.user_relationships.scoring;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join loops over node ranges. Bodies write only to the nodes of their own
+ * range and return a partial sum, which is added up across ranges.
+ */
+public final class ParallelLoops {
+
+    // Nodes per leaf task; below this splitting costs more than it saves
+    private static final int THRESHOLD = 1024;
+
+    @FunctionalInterface
+    public interface RangeBody {
+        double apply(int from, int to);
+    }
+
+    private ParallelLoops() {
+    }
+
+    public static double sum(ForkJoinPool pool, int size, RangeBody body) {
+        if (size == 0) {
+            return 0;
+        }
+        return pool.invoke(new RangeTask(body, 0, size));
+    }
+
+    private static final class RangeTask extends RecursiveTask<Double> {
+        private final RangeBody body;
+        private final int from;
+        private final int to;
+
+        private RangeTask(RangeBody body, int from, int to) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= THRESHOLD) {
+                return body.apply(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            RangeTask left = new RangeTask(body, from, mid);
+            left.fork();
+            double right = new RangeTask(body, mid, to).compute();
+            return left.join() + right;
+        }
+    }
+}
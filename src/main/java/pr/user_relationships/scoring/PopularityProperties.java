@@ -0,0 +1,18 @@
+package pr.user_relationships.scoring;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("app.popularity")
+public class PopularityProperties {
+
+    // default, pagerank or eigenvector
+    private String scorer = FriendsAndHobbiesScorer.NAME;
+
+    // Iterative scorers stop once the summed score change of an iteration is below this
+    private double tolerance = 1e-6;
+    private int maxIterations = 100;
+
+    private double damping = 0.85;
+}
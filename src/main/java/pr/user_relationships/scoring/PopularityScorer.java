@@ -0,0 +1,16 @@
+package pr.user_relationships.scoring;
+
+/**
+ * A strategy for computing users' popularity scores, selected with
+ * {@code app.popularity.scorer}. Implementations are either
+ * {@link LocalPopularityScorer}s, evaluated per user from the user and their
+ * friends, or {@link GraphPopularityScorer}s, computed over the whole
+ * friendship graph in the background.
+ */
+public interface PopularityScorer {
+
+    /**
+     * Name used to select this scorer in configuration.
+     */
+    String getName();
+}
@@ -0,0 +1,181 @@
+package pr.user_relationships.scoring;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import pr.user_relationships.entity.User;
+import pr.user_relationships.event.PopularityScoresRecomputedEvent;
+import pr.user_relationships.event.UserGraphChangedEvent;
+import pr.user_relationships.config.ReadWriteRoutingDataSource;
+import pr.user_relationships.repository.UserRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Serves popularity scores from the configured {@link PopularityScorer}.
+ * <p>
+ * A {@link LocalPopularityScorer} is evaluated when the index maintainer
+ * assigns scores, at startup and for every user a change touches, and read
+ * back from those stored results. For a {@link GraphPopularityScorer} the
+ * scores of all users are recomputed on a schedule whenever the graph changed
+ * since the last run, and looked up from that precomputed array; users created
+ * since then score 0 until the next run.
+ */
+@Component
+@EnableConfigurationProperties(PopularityProperties.class)
+@Slf4j
+public class PopularityScores {
+
+    private final PopularityScorer scorer;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private volatile Snapshot snapshot = new Snapshot(FriendGraph.build(List.of(), List.of()), new double[0]);
+    private volatile boolean dirty = true;
+    private volatile Map<String, Double> localScores = new ConcurrentHashMap<>();
+
+    public PopularityScores(PopularityProperties properties,
+                            List<PopularityScorer> scorers,
+                            UserRepository userRepository,
+                            ApplicationEventPublisher eventPublisher,
+                            PlatformTransactionManager transactionManager) {
+        this.scorer = scorers.stream()
+                .filter(candidate -> candidate.getName().equals(properties.getScorer()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown popularity scorer: " + properties.getScorer()));
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        log.info("Using popularity scorer '{}'", scorer.getName());
+    }
+
+    public String getScorerName() {
+        return scorer.getName();
+    }
+
+    /**
+     * Stored score of the given user; a local scorer evaluates users it has
+     * not assigned yet, such as one created by a transaction still running.
+     */
+    public double scoreOf(User user) {
+        if (scorer instanceof LocalPopularityScorer local) {
+            Double stored = localScores.get(user.getId());
+            return stored != null ? stored : local.score(user);
+        }
+        return scoreOf(user.getId());
+    }
+
+    /**
+     * Score of the given user as changed by the current transaction, for the
+     * response to a mutation. Graph scores only change with the next run.
+     */
+    public double currentScoreOf(User user) {
+        if (scorer instanceof LocalPopularityScorer local) {
+            return local.score(user);
+        }
+        return scoreOf(user.getId());
+    }
+
+    /**
+     * Stored score of the given user; 0 for users not scored yet, such as
+     * those created since the last graph-wide run.
+     */
+    public double scoreOf(String userId) {
+        if (scorer instanceof LocalPopularityScorer) {
+            return localScores.getOrDefault(userId, 0.0);
+        }
+        Snapshot current = snapshot;
+        int node = current.graph.indexOf(userId);
+        return node < 0 ? 0.0 : current.scores[node];
+    }
+
+    /**
+     * Stores the current score on each user, for consumers reading {@link User#getPopularityScore()}.
+     * A local scorer evaluates the given users again, so they must be freshly loaded.
+     */
+    public void assign(Collection<User> users) {
+        assign(users, localScores);
+    }
+
+    /**
+     * Like {@link #assign(Collection)}, but also drops the stored scores of users not given.
+     */
+    public void assignAll(Collection<User> users) {
+        Map<String, Double> scores = new ConcurrentHashMap<>(users.size());
+        assign(users, scores);
+        localScores = scores;
+    }
+
+    public void forget(Collection<String> userIds) {
+        localScores.keySet().removeAll(userIds);
+    }
+
+    private void assign(Collection<User> users, Map<String, Double> scores) {
+        for (User user : users) {
+            if (scorer instanceof LocalPopularityScorer local) {
+                double score = local.score(user);
+                scores.put(user.getId(), score);
+                user.setPopularityScore(score);
+            } else {
+                user.setPopularityScore(scoreOf(user.getId()));
+            }
+        }
+    }
+
+    // Remote changes arrive as events too, so every instance recomputes its own copy
+    @TransactionalEventListener
+    public void onUserGraphChanged(UserGraphChangedEvent event) {
+        dirty = true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.popularity.recompute-interval-ms:30000}",
+            initialDelayString = "${app.popularity.recompute-interval-ms:30000}")
+    public void refresh() {
+        if (scorer instanceof GraphPopularityScorer && dirty) {
+            recompute();
+        }
+    }
+
+    public synchronized void recompute() {
+        if (!(scorer instanceof GraphPopularityScorer graphScorer)) {
+            return;
+        }
+        // Cleared first so changes committed while we compute trigger another run
+        dirty = false;
+        long started = System.nanoTime();
+        // On the primary: a lagging replica would miss the change that marked us dirty
+        FriendGraph graph = ReadWriteRoutingDataSource.onPrimary(() -> readOnlyTransaction.execute(status ->
+                FriendGraph.build(userRepository.findAllIds(), userRepository.findAllFriendships())));
+        double[] scores = graphScorer.score(graph, pool);
+        snapshot = new Snapshot(graph, scores);
+
+        log.info("Computed '{}' scores for {} users and {} friendships in {} ms", scorer.getName(),
+                graph.size(), graph.edgeCount(), (System.nanoTime() - started) / 1_000_000);
+        eventPublisher.publishEvent(new PopularityScoresRecomputedEvent(scorer.getName(), graph.size()));
+    }
+
+    private static final class Snapshot {
+        private final FriendGraph graph;
+        private final double[] scores;
+
+        private Snapshot(FriendGraph graph, double[] scores) {
+            this.graph = graph;
+            this.scores = scores;
+        }
+    }
+}
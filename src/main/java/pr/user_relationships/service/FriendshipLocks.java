@@ -0,0 +1,93 @@
+package pr.user_relationships.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks keyed by user id. Friendship mutations lock the stripes of both
+ * users in ascending stripe order, so two requests touching the same users never
+ * deadlock and unrelated users rarely contend on the same stripe.
+ * <p>
+ * When a transaction is active the locks are held until it completes, otherwise
+ * they are released when the returned handle is closed.
+ */
+@Component
+public class FriendshipLocks {
+
+    private static final int DEFAULT_STRIPES = 256;
+
+    private final ReentrantLock[] stripes;
+
+    public FriendshipLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    FriendshipLocks(int stripeCount) {
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public Handle lock(String... userIds) {
+        int[] order = stripeOrder(userIds);
+        for (int stripe : order) {
+            stripes[stripe].lock();
+        }
+
+        Handle handle = new Handle(order);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    handle.release();
+                }
+            });
+            handle.deferred = true;
+        }
+        return handle;
+    }
+
+    private int[] stripeOrder(String... userIds) {
+        return Arrays.stream(userIds)
+                .mapToInt(this::stripeFor)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    private int stripeFor(String userId) {
+        return (userId.hashCode() & 0x7fffffff) % stripes.length;
+    }
+
+    public final class Handle implements AutoCloseable {
+        private final int[] order;
+        private boolean deferred;
+        private boolean released;
+
+        private Handle(int[] order) {
+            this.order = order;
+        }
+
+        private void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            for (int i = order.length - 1; i >= 0; i--) {
+                stripes[order[i]].unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!deferred) {
+                release();
+            }
+        }
+    }
+}
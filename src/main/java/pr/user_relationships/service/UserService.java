@@ -1,45 +1,147 @@
 package pr.user_relationships.service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import pr.user_relationships.dto.BatchGetResponse;
 import pr.user_relationships.dto.CreateUserRequest;
 import pr.user_relationships.dto.GraphResponse;
 import pr.user_relationships.dto.UpdateUserRequest;
 import pr.user_relationships.dto.UserDTO;
+import pr.user_relationships.dto.UserSearchCriteria;
+import pr.user_relationships.dto.UserSuggestion;
 import pr.user_relationships.entity.User;
+import pr.user_relationships.event.UserGraphChangedEvent;
 import pr.user_relationships.exception.ConflictException;
 import pr.user_relationships.exception.ResourceNotFoundException;
+import pr.user_relationships.index.UserSearchIndex;
+import pr.user_relationships.index.UsernameSuggestIndex;
+import pr.user_relationships.layout.GraphLayoutService;
+import pr.user_relationships.repository.UserLoader;
 import pr.user_relationships.repository.UserRepository;
+import pr.user_relationships.scoring.PopularityScores;
 import pr.user_relationships.dto.Relationship;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 @Transactional
 public class UserService {
 
+    private static final int MAX_SUGGESTIONS = 50;
+
     private final UserRepository userRepository;
+    private final UserLoader userLoader;
+    private final FriendshipLocks friendshipLocks;
+    private final GraphLayoutService graphLayoutService;
+    private final UserSearchIndex userSearchIndex;
+    private final UsernameSuggestIndex usernameSuggestIndex;
+    private final PopularityScores popularityScores;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public UserService(UserRepository userRepository,
+                       UserLoader userLoader,
+                       FriendshipLocks friendshipLocks,
+                       GraphLayoutService graphLayoutService,
+                       UserSearchIndex userSearchIndex,
+                       UsernameSuggestIndex usernameSuggestIndex,
+                       PopularityScores popularityScores,
+                       ApplicationEventPublisher eventPublisher,
+                       PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.userLoader = userLoader;
+        this.friendshipLocks = friendshipLocks;
+        this.graphLayoutService = graphLayoutService;
+        this.userSearchIndex = userSearchIndex;
+        this.usernameSuggestIndex = usernameSuggestIndex;
+        this.popularityScores = popularityScores;
+        this.eventPublisher = eventPublisher;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
 
+    @Transactional(readOnly = true)
     public List<UserDTO> getAllUsers() {
         return userRepository.findAll().stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public UserDTO getUserById(String id) {
-        User user = findUserById(id);
+        User user = findUserById(canonicalUserId(id));
         return convertToDTO(user);
     }
 
+    /**
+     * Loads the given users with one IN-list query per table and
+     * {@value UserLoader#CHUNK_SIZE} ids, without loading their friends.
+     * Users come back in request order without duplicates; ids that do not
+     * exist (or are not valid ids at all) are listed in {@code missingIds}
+     * as they were sent. Ids are matched in canonical form, so differently
+     * written ids of one user return that user once.
+     */
+    @Transactional(readOnly = true)
+    public BatchGetResponse batchGetUsers(List<String> ids) {
+        Set<String> requested = new LinkedHashSet<>(ids);
+        Map<String, String> canonicalIds = new HashMap<>(requested.size() * 2);
+        for (String id : requested) {
+            String canonical = canonicalOrNull(id);
+            if (canonical != null) {
+                canonicalIds.put(id, canonical);
+            }
+        }
+        List<String> lookup = new ArrayList<>(new LinkedHashSet<>(canonicalIds.values()));
+
+        Map<String, User> found = new HashMap<>(lookup.size() * 2);
+        userLoader.findAllById(lookup).forEach(user -> found.put(user.getId(), user));
+
+        List<UserDTO> users = new ArrayList<>(found.size());
+        List<String> missingIds = new ArrayList<>();
+        Set<String> returned = new HashSet<>();
+        for (String id : requested) {
+            String canonical = canonicalIds.get(id);
+            User user = canonical == null ? null : found.get(canonical);
+            if (user == null) {
+                missingIds.add(id);
+            } else if (returned.add(canonical)) {
+                users.add(convertToDTO(user));
+            }
+        }
+        return BatchGetResponse.builder()
+                .users(users)
+                .missingIds(missingIds)
+                .build();
+    }
+
+    @Transactional(readOnly = true)
+    public List<UserDTO> searchUsers(UserSearchCriteria criteria) {
+        return userRepository.findAllById(userSearchIndex.search(criteria)).stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
+    // Served from memory only, so no transaction or pool connection per keystroke
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<UserSuggestion> suggestUsers(String prefix, int limit) {
+        return usernameSuggestIndex.suggest(prefix, Math.max(1, Math.min(limit, MAX_SUGGESTIONS)));
+    }
+
     public UserDTO createUser(CreateUserRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new ConflictException("Username already exists: " + request.getUsername());
@@ -49,15 +151,16 @@ public class UserService {
                 .username(request.getUsername())
                 .age(request.getAge())
                 .hobbies(new ArrayList<>(request.getHobbies()))
-                .friends(new HashSet<>())
                 .build();
 
         User savedUser = userRepository.save(user);
+        publish(UserGraphChangedEvent.Type.USER_CREATED, savedUser.getId(), null, List.of());
         log.info("Created user: {}", savedUser.getId());
-        return convertToDTO(savedUser);
+        return convertChangedToDTO(savedUser);
     }
 
     public UserDTO updateUser(String id, UpdateUserRequest request) {
+        id = canonicalUserId(id);
         User user = findUserById(id);
 
         if (request.getUsername() != null) {
@@ -72,16 +175,32 @@ public class UserService {
             user.setAge(request.getAge());
         }
 
+        // Friends' scores depend on shared hobbies, so they change along with ours
+        List<String> affectedFriends = List.of();
         if (request.getHobbies() != null && !request.getHobbies().isEmpty()) {
             user.setHobbies(new ArrayList<>(request.getHobbies()));
+            affectedFriends = user.getFriends().stream()
+                    .map(User::getId)
+                    .collect(Collectors.toList());
         }
 
         User updatedUser = userRepository.save(user);
+        publish(UserGraphChangedEvent.Type.USER_UPDATED, id, null, affectedFriends);
         log.info("Updated user: {}", updatedUser.getId());
-        return convertToDTO(updatedUser);
+        return convertChangedToDTO(updatedUser);
     }
 
     public void deleteUser(String id) {
+        deleteUser(id, false);
+    }
+
+    public void deleteUser(String id, boolean cascade) {
+        id = canonicalUserId(id);
+        if (cascade) {
+            deleteUserWithFriendships(id);
+            return;
+        }
+
         User user = findUserById(id);
 
         if (!user.getFriends().isEmpty()) {
@@ -91,47 +210,95 @@ public class UserService {
         }
 
         userRepository.delete(user);
+        publish(UserGraphChangedEvent.Type.USER_DELETED, id, null, List.of());
         log.info("Deleted user: {}", id);
     }
 
+    private void deleteUserWithFriendships(String id) {
+        // Holding the user's stripe keeps concurrent links to this user out
+        // until the deletes below commit
+        try (FriendshipLocks.Handle ignored = friendshipLocks.lock(id)) {
+            requireUserExists(id);
+
+            List<String> friendIds = userRepository.findFriendIds(id);
+            int removedFriendships = userRepository.deleteAllFriendships(id);
+            userRepository.deleteHobbies(id);
+            userRepository.deleteUserRow(id);
+
+            // Former friends lose a friend and their shared hobbies, so their scores change
+            publish(UserGraphChangedEvent.Type.USER_DELETED, id, null, friendIds);
+
+            log.info("Deleted user: {} and {} friendships", id, removedFriendships);
+        }
+    }
+
     public UserDTO linkUsers(String userId, String friendId) throws BadRequestException {
+        userId = canonicalUserId(userId);
+        friendId = canonicalUserId(friendId);
         if (userId.equals(friendId)) {
             throw new BadRequestException("User cannot be friends with themselves");
         }
 
-        User user = findUserById(userId);
-        User friend = findUserById(friendId);
+        try (FriendshipLocks.Handle ignored = friendshipLocks.lock(userId, friendId)) {
+            requireUserExists(userId);
+            requireUserExists(friendId);
 
-        if (user.getFriends().contains(friend)) {
-            throw new ConflictException("Users are already friends");
+            int inserted = userRepository.insertFriendship(userId, friendId);
+            if (inserted == 0) {
+                throw new ConflictException("Users are already friends");
+            }
         }
 
-        user.addFriend(friend);
-        userRepository.save(user);
-        userRepository.save(friend);
-
+        publish(UserGraphChangedEvent.Type.USERS_LINKED, userId, friendId, List.of());
         log.info("Linked users: {} and {}", userId, friendId);
-        return convertToDTO(user);
+        return convertChangedToDTO(findUserById(userId));
     }
 
     public UserDTO unlinkUsers(String userId, String friendId) throws BadRequestException {
-        User user = findUserById(userId);
-        User friend = findUserById(friendId);
+        userId = canonicalUserId(userId);
+        friendId = canonicalUserId(friendId);
+        try (FriendshipLocks.Handle ignored = friendshipLocks.lock(userId, friendId)) {
+            requireUserExists(userId);
+            requireUserExists(friendId);
 
-        if (!user.getFriends().contains(friend)) {
-            throw new BadRequestException("Users are not friends");
+            int deleted = userRepository.deleteFriendship(userId, friendId);
+            if (deleted == 0) {
+                throw new BadRequestException("Users are not friends");
+            }
         }
 
-        user.removeFriend(friend);
-        userRepository.save(user);
-        userRepository.save(friend);
-
+        publish(UserGraphChangedEvent.Type.USERS_UNLINKED, userId, friendId, List.of());
         log.info("Unlinked users: {} and {}", userId, friendId);
-        return convertToDTO(user);
+        return convertChangedToDTO(findUserById(userId));
     }
 
+    @Transactional(readOnly = true)
     public GraphResponse getGraphData() {
-        List<User> users = userRepository.findAll();
+        return getGraphData(new UserSearchCriteria(), false);
+    }
+
+    /**
+     * Returns the whole graph, or with a non-empty filter the subgraph induced
+     * by the matching users. The layout is computed after the read transaction
+     * has ended, so it does not hold a database connection.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public GraphResponse getGraphData(UserSearchCriteria filter, boolean withLayout) {
+        GraphResponse graph = readOnlyTransaction.execute(status -> loadGraph(filter));
+        if (withLayout) {
+            graphLayoutService.applyLayout(graph.getUsers(), graph.getRelationships(), !filter.isEmpty());
+        }
+        return graph;
+    }
+
+    private GraphResponse loadGraph(UserSearchCriteria filter) {
+        boolean filtered = !filter.isEmpty();
+        List<User> users = filtered
+                ? userRepository.findAllById(userSearchIndex.search(filter))
+                : userRepository.findAll();
+        Set<String> userIds = users.stream()
+                .map(User::getId)
+                .collect(Collectors.toSet());
         List<UserDTO> userDTOs = users.stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
@@ -139,6 +306,9 @@ public class UserService {
         Set<Relationship> relationships = new HashSet<>();
         for (User user : users) {
             for (User friend : user.getFriends()) {
+                if (filtered && !userIds.contains(friend.getId())) {
+                    continue;
+                }
                 String id1 = user.getId();
                 String id2 = friend.getId();
                 // Ensure consistent ordering to prevent duplicates
@@ -162,13 +332,57 @@ public class UserService {
                 .build();
     }
 
+    /**
+     * Returns the id in the lowercase form stored in the database, so locks,
+     * events and indexes all see one spelling of it. Ids that are not UUIDs
+     * cannot belong to any user; they are rejected here instead of failing
+     * the uuid cast in the database.
+     */
+    public static String canonicalUserId(String id) {
+        String canonical = canonicalOrNull(id);
+        if (canonical == null) {
+            throw new ResourceNotFoundException("User not found with id: " + id);
+        }
+        return canonical;
+    }
+
     private User findUserById(String id) {
         return userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
     }
 
+    private static String canonicalOrNull(String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(id).toString();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void requireUserExists(String id) {
+        if (!userRepository.existsById(id)) {
+            throw new ResourceNotFoundException("User not found with id: " + id);
+        }
+    }
+
+    private void publish(UserGraphChangedEvent.Type type, String userId, String otherUserId,
+                         List<String> affectedUserIds) {
+        eventPublisher.publishEvent(new UserGraphChangedEvent(type, userId, otherUserId, affectedUserIds));
+    }
+
     private UserDTO convertToDTO(User user) {
-        user.calculatePopularityScore();
+        return convertToDTO(user, popularityScores.scoreOf(user));
+    }
+
+    // The stored scores are only updated once this transaction commits
+    private UserDTO convertChangedToDTO(User user) {
+        return convertToDTO(user, popularityScores.currentScoreOf(user));
+    }
+
+    private UserDTO convertToDTO(User user, double popularityScore) {
         return UserDTO.builder()
                 .id(user.getId())
                 .username(user.getUsername())
@@ -178,7 +392,7 @@ public class UserService {
                         .map(User::getId)
                         .collect(Collectors.toList()))
                 .createdAt(user.getCreatedAt())
-                .popularityScore(user.getPopularityScore())
+                .popularityScore(popularityScore)
                 .build();
     }
 }
@@ -0,0 +1,305 @@
+package pr.user_relationships.store;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Immutable friendship graph held entirely in direct memory:
+ * <ul>
+ *     <li>the id dictionary, as 128-bit ids per node plus an open-addressing
+ *     hash table from id to node,</li>
+ *     <li>adjacency in compressed sparse row form, each row sorted ascending,</li>
+ *     <li>each node's hobby ids, in the same row form.</li>
+ * </ul>
+ * The heap only holds the chunk references, whatever the graph size.
+ * Graphs are built either from a {@link Source} with random access to each
+ * node, or from a {@link RowSource} in passes over unordered rows, such as a
+ * database cursor.
+ */
+final class CompactGraph {
+
+    /**
+     * Node data to build from, numbered {@code 0 .. size - 1}.
+     */
+    interface Source {
+
+        int size();
+
+        UUID idOf(int node);
+
+        // Sorted ascending, in the numbering of this source
+        int[] neighbors(int node);
+
+        // Sorted ascending
+        int[] hobbies(int node);
+    }
+
+    /**
+     * Rows to build from, in any order. Friendships and hobbies are passed
+     * twice, first to size the rows and then to fill them, and both passes
+     * must see the same rows. Rows naming an id that was not passed are skipped.
+     */
+    interface RowSource {
+
+        // Number of ids forEachId passes
+        int size();
+
+        void forEachId(Consumer<UUID> action);
+
+        // Each friendship once, in either direction
+        void forEachFriendship(BiConsumer<UUID, UUID> action);
+
+        // Each pair of user and hobby id once
+        void forEachHobby(ObjIntConsumer<UUID> action);
+    }
+
+    private static final int[] NONE = new int[0];
+
+    private final int size;
+    private final OffHeapLongs ids;
+    private final OffHeapInts slots;
+    private final OffHeapLongs offsets;
+    private final OffHeapInts targets;
+    private final OffHeapLongs hobbyOffsets;
+    private final OffHeapInts hobbyIds;
+
+    private CompactGraph(int size, OffHeapLongs ids, OffHeapInts slots, OffHeapLongs offsets,
+                         OffHeapInts targets, OffHeapLongs hobbyOffsets, OffHeapInts hobbyIds) {
+        this.size = size;
+        this.ids = ids;
+        this.slots = slots;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.hobbyOffsets = hobbyOffsets;
+        this.hobbyIds = hobbyIds;
+    }
+
+    static CompactGraph empty(DirectBuffers buffers) {
+        return build(new Source() {
+            public int size() {
+                return 0;
+            }
+
+            public UUID idOf(int node) {
+                throw new IndexOutOfBoundsException(node);
+            }
+
+            public int[] neighbors(int node) {
+                return NONE;
+            }
+
+            public int[] hobbies(int node) {
+                return NONE;
+            }
+        }, buffers);
+    }
+
+    static CompactGraph build(Source source, DirectBuffers buffers) {
+        int size = source.size();
+        OffHeapLongs ids = new OffHeapLongs(2L * size, buffers);
+        OffHeapLongs offsets = new OffHeapLongs(size + 1L, buffers);
+        OffHeapLongs hobbyOffsets = new OffHeapLongs(size + 1L, buffers);
+        long total = 0;
+        long totalHobbies = 0;
+        for (int node = 0; node < size; node++) {
+            UUID id = source.idOf(node);
+            ids.set(2L * node, id.getMostSignificantBits());
+            ids.set(2L * node + 1, id.getLeastSignificantBits());
+            offsets.set(node, total);
+            total += source.neighbors(node).length;
+            hobbyOffsets.set(node, totalHobbies);
+            totalHobbies += source.hobbies(node).length;
+        }
+        offsets.set(size, total);
+        hobbyOffsets.set(size, totalHobbies);
+
+        OffHeapInts targets = new OffHeapInts(total, buffers);
+        OffHeapInts hobbyIds = new OffHeapInts(totalHobbies, buffers);
+        for (int node = 0; node < size; node++) {
+            copy(source.neighbors(node), targets, offsets.get(node));
+            copy(source.hobbies(node), hobbyIds, hobbyOffsets.get(node));
+        }
+        return new CompactGraph(size, ids, slots(ids, size, buffers), offsets, targets, hobbyOffsets, hobbyIds);
+    }
+
+    static CompactGraph build(RowSource source, DirectBuffers buffers) {
+        int size = source.size();
+        OffHeapLongs ids = new OffHeapLongs(2L * size, buffers);
+        int[] passed = {0};
+        source.forEachId(id -> {
+            if (passed[0] == size) {
+                throw new IllegalStateException("More than the " + size + " ids announced");
+            }
+            ids.set(2L * passed[0], id.getMostSignificantBits());
+            ids.set(2L * passed[0] + 1, id.getLeastSignificantBits());
+            passed[0]++;
+        });
+        if (passed[0] != size) {
+            throw new IllegalStateException(passed[0] + " of the " + size + " ids announced");
+        }
+        OffHeapInts slots = slots(ids, size, buffers);
+
+        OffHeapLongs offsets = new OffHeapLongs(size + 1L, buffers);
+        source.forEachFriendship((a, b) -> {
+            int from = find(ids, slots, a);
+            int to = find(ids, slots, b);
+            if (from >= 0 && to >= 0) {
+                offsets.set(from, offsets.get(from) + 1);
+                offsets.set(to, offsets.get(to) + 1);
+            }
+        });
+        OffHeapInts targets = new OffHeapInts(toRowEnds(offsets, size), buffers);
+        source.forEachFriendship((a, b) -> {
+            int from = find(ids, slots, a);
+            int to = find(ids, slots, b);
+            if (from >= 0 && to >= 0) {
+                prepend(offsets, targets, from, to);
+                prepend(offsets, targets, to, from);
+            }
+        });
+        sortRows(offsets, targets, size);
+
+        OffHeapLongs hobbyOffsets = new OffHeapLongs(size + 1L, buffers);
+        source.forEachHobby((id, hobby) -> {
+            int node = find(ids, slots, id);
+            if (node >= 0) {
+                hobbyOffsets.set(node, hobbyOffsets.get(node) + 1);
+            }
+        });
+        OffHeapInts hobbyIds = new OffHeapInts(toRowEnds(hobbyOffsets, size), buffers);
+        source.forEachHobby((id, hobby) -> {
+            int node = find(ids, slots, id);
+            if (node >= 0) {
+                prepend(hobbyOffsets, hobbyIds, node, hobby);
+            }
+        });
+        sortRows(hobbyOffsets, hobbyIds, size);
+
+        return new CompactGraph(size, ids, slots, offsets, targets, hobbyOffsets, hobbyIds);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long edgeCount() {
+        return targets.length() / 2;
+    }
+
+    UUID idOf(int node) {
+        return new UUID(ids.get(2L * node), ids.get(2L * node + 1));
+    }
+
+    /**
+     * @return the node of the id, or -1 if it is not in this graph
+     */
+    int indexOf(UUID id) {
+        return find(ids, slots, id);
+    }
+
+    int[] neighbors(int node) {
+        return row(offsets, targets, node);
+    }
+
+    // Sorted ascending
+    int[] hobbies(int node) {
+        return row(hobbyOffsets, hobbyIds, node);
+    }
+
+    long offHeapBytes() {
+        return ids.bytes() + slots.bytes() + offsets.bytes() + targets.bytes()
+                + hobbyOffsets.bytes() + hobbyIds.bytes();
+    }
+
+    // Nothing may read this graph afterwards
+    void release(DirectBuffers buffers) {
+        for (OffHeapLongs longs : new OffHeapLongs[]{ids, offsets, hobbyOffsets}) {
+            longs.release(buffers);
+        }
+        for (OffHeapInts ints : new OffHeapInts[]{slots, targets, hobbyIds}) {
+            ints.release(buffers);
+        }
+    }
+
+    // At most half full, so probe sequences stay short
+    private static OffHeapInts slots(OffHeapLongs ids, int size, DirectBuffers buffers) {
+        OffHeapInts slots = new OffHeapInts(Math.max(2, Long.highestOneBit(Math.max(1, 2L * size - 1)) << 1), buffers);
+        long mask = slots.length() - 1;
+        for (int node = 0; node < size; node++) {
+            long slot = hash(ids.get(2L * node), ids.get(2L * node + 1)) & mask;
+            while (slots.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots.set(slot, node + 1);
+        }
+        return slots;
+    }
+
+    private static int find(OffHeapLongs ids, OffHeapInts slots, UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        long mask = slots.length() - 1;
+        long slot = hash(msb, lsb) & mask;
+        int entry;
+        while ((entry = slots.get(slot)) != 0) {
+            int node = entry - 1;
+            if (ids.get(2L * node) == msb && ids.get(2L * node + 1) == lsb) {
+                return node;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Turns per-row counts into the offset where each row ends, and returns the total
+    private static long toRowEnds(OffHeapLongs offsets, int size) {
+        long total = 0;
+        for (int node = 0; node < size; node++) {
+            total += offsets.get(node);
+            offsets.set(node, total);
+        }
+        offsets.set(size, total);
+        return total;
+    }
+
+    // Rows fill from their end, so once all values are in each offset is back at its row's start
+    private static void prepend(OffHeapLongs offsets, OffHeapInts values, int node, int value) {
+        long at = offsets.get(node) - 1;
+        values.set(at, value);
+        offsets.set(node, at);
+    }
+
+    private static void sortRows(OffHeapLongs offsets, OffHeapInts values, int size) {
+        for (int node = 0; node < size; node++) {
+            int[] row = row(offsets, values, node);
+            Arrays.sort(row);
+            copy(row, values, offsets.get(node));
+        }
+    }
+
+    private static int[] row(OffHeapLongs rowOffsets, OffHeapInts values, int node) {
+        long from = rowOffsets.get(node);
+        int[] row = new int[(int) (rowOffsets.get(node + 1L) - from)];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = values.get(from + i);
+        }
+        return row;
+    }
+
+    private static void copy(int[] row, OffHeapInts values, long at) {
+        for (int i = 0; i < row.length; i++) {
+            values.set(at + i, row[i]);
+        }
+    }
+
+    private static long hash(long msb, long lsb) {
+        long h = msb * 31 + lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
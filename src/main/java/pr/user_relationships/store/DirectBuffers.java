@@ -0,0 +1,72 @@
+package pr.user_relationships.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Direct buffers of graphs no reader can see any more, handed out again to
+ * the next build. Direct memory is only freed once the GC collects its
+ * buffer, so allocating afresh for every compaction would keep several old
+ * graphs alive. Capacities are rounded up, so a slightly bigger graph still
+ * fits into the buffers of the one before it. Only used by the store's
+ * single writer.
+ */
+final class DirectBuffers {
+
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    // capacity -> free buffers of that capacity
+    private final TreeMap<Integer, List<ByteBuffer>> free = new TreeMap<>();
+    private long allocatedBytes;
+
+    /**
+     * A zeroed buffer in native byte order with {@code bytes} remaining.
+     */
+    ByteBuffer take(int bytes) {
+        ByteBuffer buffer;
+        // A much bigger buffer is kept for an array that needs it
+        Map.Entry<Integer, List<ByteBuffer>> fit = free.ceilingEntry(bytes);
+        if (fit != null && fit.getKey() <= 2L * capacityFor(bytes)) {
+            List<ByteBuffer> sameSize = fit.getValue();
+            buffer = sameSize.remove(sameSize.size() - 1);
+            if (sameSize.isEmpty()) {
+                free.remove(fit.getKey());
+            }
+            buffer.clear().limit(bytes);
+            for (int at = 0; at < bytes; at += ZEROS.length) {
+                buffer.put(at, ZEROS, 0, Math.min(ZEROS.length, bytes - at));
+            }
+        } else {
+            buffer = ByteBuffer.allocateDirect(capacityFor(bytes));
+            allocatedBytes += buffer.capacity();
+            buffer.limit(bytes);
+        }
+        return buffer.order(ByteOrder.nativeOrder());
+    }
+
+    void give(ByteBuffer buffer) {
+        free.computeIfAbsent(buffer.capacity(), capacity -> new ArrayList<>()).add(buffer);
+    }
+
+    /**
+     * Drops the buffers nobody took, leaving them to the GC.
+     */
+    void clear() {
+        free.clear();
+    }
+
+    // Everything ever allocated, reused or not
+    long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    // Rounded up to an eighth of the size's highest bit, so at most 12.5% is wasted
+    private static int capacityFor(int bytes) {
+        int step = Math.max(4096, Integer.highestOneBit(bytes) >>> 3);
+        return (int) (((long) bytes + step - 1) / step * step);
+    }
+}
@@ -0,0 +1,18 @@
+package pr.user_relationships.store;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("app.graph-store")
+public class GraphStoreProperties {
+
+    // Ints of direct memory for the change log between compactions (16 MB by default)
+    private int logCapacity = 4 * 1024 * 1024;
+
+    // Compact early once this many users changed since the last compaction
+    private int maxPendingUsers = 10_000;
+
+    // Rows per cursor fetch when the graph is read from the database at startup
+    private int fetchSize = 10_000;
+}
@@ -0,0 +1,592 @@
+package pr.user_relationships.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pr.user_relationships.config.ReadWriteRoutingDataSource;
+import pr.user_relationships.entity.User;
+import pr.user_relationships.index.UserIndex;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Friendship graph kept off the Java heap, so heap size and GC pauses do not
+ * grow with the graph.
+ * <p>
+ * The bulk of the graph is an immutable {@link CompactGraph}, read at startup
+ * from a database cursor in a single snapshot, so users are never loaded as
+ * entities for it. Committed
+ * changes, delivered through {@link UserIndex}, are appended as records to a
+ * direct-memory change log. Each record holds a user's full current friend
+ * and hobby lists, and supersedes that user's row in the compact graph.
+ * Compaction folds the log into a new compact graph, either on a schedule or
+ * when the log fills up.
+ * <p>
+ * Readers take the current {@link View} from a volatile field and never lock.
+ * The single writer only appends past the end that published views can see,
+ * and publishes a new view for each batch of changes. Readers pin the
+ * compact graph and log of their view while they read, and the writer hands
+ * the direct memory of replaced ones to the next build once nobody pins them.
+ */
+@Component
+@EnableConfigurationProperties(GraphStoreProperties.class)
+@Slf4j
+public class OffHeapGraphStore implements UserIndex {
+
+    // Log record: node, flags, hobby count, friend count, hobby ids..., friend nodes...
+    private static final int RECORD_HEADER = 4;
+    private static final int REMOVED = 1;
+    private static final int[] NONE = new int[0];
+
+    private final GraphStoreProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+
+    // Writer state, guarded by this
+    private final DirectBuffers buffers = new DirectBuffers();
+    private final List<View> retired = new ArrayList<>();
+    private Map<String, Integer> hobbyIds = new HashMap<>();
+    private long logEnd;
+
+    private volatile View view;
+
+    public OffHeapGraphStore(GraphStoreProperties properties, DataSource dataSource,
+                             PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        // The PostgreSQL driver only uses a cursor with a fetch size inside a transaction
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(properties.getFetchSize());
+        // Every table is read twice; one snapshot keeps the passes identical
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.view = new View(CompactGraph.empty(buffers), new OffHeapInts(properties.getLogCapacity(), buffers),
+                Map.of(), Map.of(), List.of(), new AtomicInteger());
+    }
+
+    public record FriendCandidate(String id, int mutualFriends, int sharedHobbies) {
+    }
+
+    /**
+     * Streams the graph from the database, on the primary like the users the
+     * other indexes are rebuilt from.
+     */
+    @Override
+    public synchronized boolean reload() {
+        long started = System.nanoTime();
+        hobbyIds = new HashMap<>();
+        CompactGraph base = ReadWriteRoutingDataSource.onPrimary(() ->
+                snapshotTransaction.execute(status -> CompactGraph.build(new DatabaseRows(), buffers)));
+        publishBase(base, properties.getLogCapacity());
+        log.info("Read off-heap graph of {} users and {} friendships ({} KB) in {} ms", base.size(),
+                base.edgeCount(), base.offHeapBytes() / 1024, (System.nanoTime() - started) / 1_000_000);
+        return true;
+    }
+
+    @Override
+    public synchronized void rebuild(Collection<User> users) {
+        long started = System.nanoTime();
+        hobbyIds = new HashMap<>();
+        List<User> ordered = new ArrayList<>(users);
+        Map<String, Integer> nodeById = new HashMap<>(ordered.size() * 2);
+        for (User user : ordered) {
+            nodeById.put(user.getId(), nodeById.size());
+        }
+
+        CompactGraph base = CompactGraph.build(new CompactGraph.Source() {
+            public int size() {
+                return ordered.size();
+            }
+
+            public UUID idOf(int node) {
+                return UUID.fromString(ordered.get(node).getId());
+            }
+
+            public int[] neighbors(int node) {
+                return ordered.get(node).getFriends().stream()
+                        .map(friend -> nodeById.get(friend.getId()))
+                        .filter(friend -> friend != null)
+                        .mapToInt(Integer::intValue)
+                        .sorted()
+                        .distinct()
+                        .toArray();
+            }
+
+            public int[] hobbies(int node) {
+                return hobbyIdsOf(ordered.get(node));
+            }
+        }, buffers);
+
+        publishBase(base, properties.getLogCapacity());
+        log.info("Built off-heap graph of {} users and {} friendships ({} KB) in {} ms", base.size(),
+                base.edgeCount(), base.offHeapBytes() / 1024, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Override
+    public synchronized void upsert(Collection<User> users) {
+        long needed = 0;
+        for (User user : users) {
+            needed += RECORD_HEADER + user.getFriends().size() + user.getHobbies().size();
+        }
+        View current = view.rows.size() + users.size() > properties.getMaxPendingUsers()
+                || logEnd + needed > view.log.length()
+                ? compactLocked(needed)
+                : view;
+
+        Map<Integer, Long> rows = new HashMap<>(current.rows);
+        Map<UUID, Integer> addedIds = new HashMap<>(current.addedIds);
+        List<UUID> addedNodes = new ArrayList<>(current.addedNodes);
+        for (User user : users) {
+            int node = nodeFor(current.base, addedIds, addedNodes, UUID.fromString(user.getId()));
+            int[] friends = user.getFriends().stream()
+                    .mapToInt(friend -> nodeFor(current.base, addedIds, addedNodes, UUID.fromString(friend.getId())))
+                    .sorted()
+                    .distinct()
+                    .toArray();
+            rows.put(node, append(current.log, node, 0, hobbyIdsOf(user), friends));
+        }
+        view = new View(current.base, current.log, rows, addedIds, addedNodes, current.readers);
+    }
+
+    @Override
+    public synchronized void remove(Collection<String> userIds) {
+        View current = view;
+        if (current.rows.size() + userIds.size() > properties.getMaxPendingUsers()
+                || logEnd + (long) RECORD_HEADER * userIds.size() > current.log.length()) {
+            current = compactLocked((long) RECORD_HEADER * userIds.size());
+        }
+
+        Map<Integer, Long> rows = new HashMap<>(current.rows);
+        for (String userId : userIds) {
+            UUID id = parse(userId);
+            int node = id == null ? -1 : current.anyNodeOf(id);
+            if (node >= 0) {
+                rows.put(node, append(current.log, node, REMOVED, NONE, NONE));
+            }
+        }
+        view = new View(current.base, current.log, rows, current.addedIds, current.addedNodes, current.readers);
+    }
+
+    @Scheduled(fixedDelayString = "${app.graph-store.compaction-interval-ms:60000}")
+    public synchronized void compact() {
+        if (!view.rows.isEmpty()) {
+            compactLocked(0);
+        } else {
+            recycleRetired();
+        }
+    }
+
+    // Direct memory allocated so far, including what was reused since
+    long allocatedBytes() {
+        return buffers.allocatedBytes();
+    }
+
+    public boolean contains(String userId) {
+        UUID id = parse(userId);
+        if (id == null) {
+            return false;
+        }
+        View current = pin();
+        try {
+            return current.nodeOf(id) >= 0;
+        } finally {
+            current.readers.decrementAndGet();
+        }
+    }
+
+    public List<String> friendIds(String userId) {
+        View current = pin();
+        try {
+            int node = current.nodeOf(parse(userId));
+            if (node < 0) {
+                return List.of();
+            }
+            List<String> friends = new ArrayList<>();
+            for (int friend : current.neighbors(node)) {
+                if (current.live(friend)) {
+                    friends.add(current.idOf(friend).toString());
+                }
+            }
+            return friends;
+        } finally {
+            current.readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * For each friend of the user, the number of friends the two have in common.
+     */
+    public Map<String, Integer> mutualFriendCounts(String userId) {
+        View current = pin();
+        try {
+            int node = current.nodeOf(parse(userId));
+            if (node < 0) {
+                return Map.of();
+            }
+            int[] mine = current.neighbors(node);
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (int friend : mine) {
+                if (current.live(friend)) {
+                    counts.put(current.idOf(friend).toString(), intersectionSize(mine, current.neighbors(friend)));
+                }
+            }
+            return counts;
+        } finally {
+            current.readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Friends of friends who are not friends yet, by number of mutual friends,
+     * then number of shared hobbies.
+     */
+    public List<FriendCandidate> suggestFriends(String userId, int limit) {
+        View current = pin();
+        try {
+            return suggestFriends(current, userId, limit);
+        } finally {
+            current.readers.decrementAndGet();
+        }
+    }
+
+    private static List<FriendCandidate> suggestFriends(View current, String userId, int limit) {
+        int node = current.nodeOf(parse(userId));
+        if (node < 0 || limit <= 0) {
+            return List.of();
+        }
+        int[] mine = current.neighbors(node);
+        Map<Integer, Integer> mutual = new HashMap<>();
+        for (int friend : mine) {
+            if (!current.live(friend)) {
+                continue;
+            }
+            for (int candidate : current.neighbors(friend)) {
+                if (candidate != node && Arrays.binarySearch(mine, candidate) < 0 && current.live(candidate)) {
+                    mutual.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        if (mutual.isEmpty()) {
+            return List.of();
+        }
+
+        // Shared hobbies only break ties, so only candidates that can still make the cut need them
+        List<Integer> byMutual = new ArrayList<>(mutual.keySet());
+        byMutual.sort(Comparator.comparing(mutual::get).reversed());
+        int cutoff = mutual.get(byMutual.get(Math.min(limit, byMutual.size()) - 1));
+        int[] myHobbies = current.hobbies(node);
+        List<FriendCandidate> candidates = new ArrayList<>();
+        for (int candidate : byMutual) {
+            if (mutual.get(candidate) < cutoff) {
+                break;
+            }
+            candidates.add(new FriendCandidate(current.idOf(candidate).toString(), mutual.get(candidate),
+                    current.sharedHobbies(candidate, myHobbies)));
+        }
+        candidates.sort(Comparator.comparingInt(FriendCandidate::mutualFriends).reversed()
+                .thenComparing(Comparator.comparingInt(FriendCandidate::sharedHobbies).reversed())
+                .thenComparing(FriendCandidate::id));
+        return candidates.size() > limit ? List.copyOf(candidates.subList(0, limit)) : candidates;
+    }
+
+    private View compactLocked(long extraLog) {
+        long started = System.nanoTime();
+        View current = view;
+        int total = current.size();
+        OffHeapInts newIndex = new OffHeapInts(total, buffers);
+        int live = 0;
+        for (int node = 0; node < total; node++) {
+            if (current.live(node)) {
+                newIndex.set(node, ++live);
+            }
+        }
+        OffHeapInts oldIndex = new OffHeapInts(live, buffers);
+        for (int node = 0; node < total; node++) {
+            int renumbered = newIndex.get(node);
+            if (renumbered != 0) {
+                oldIndex.set(renumbered - 1, node);
+            }
+        }
+
+        int size = live;
+        CompactGraph base = CompactGraph.build(new CompactGraph.Source() {
+            public int size() {
+                return size;
+            }
+
+            public UUID idOf(int node) {
+                return current.idOf(oldIndex.get(node));
+            }
+
+            // Renumbering keeps the order of surviving nodes, so rows stay sorted
+            public int[] neighbors(int node) {
+                int[] row = current.neighbors(oldIndex.get(node));
+                int[] renumbered = new int[row.length];
+                int count = 0;
+                for (int friend : row) {
+                    int target = newIndex.get(friend);
+                    if (target != 0) {
+                        renumbered[count++] = target - 1;
+                    }
+                }
+                return count == row.length ? renumbered : Arrays.copyOf(renumbered, count);
+            }
+
+            public int[] hobbies(int node) {
+                return current.hobbies(oldIndex.get(node));
+            }
+        }, buffers);
+
+        View compacted = publishBase(base, Math.max(properties.getLogCapacity(), extraLog));
+        newIndex.release(buffers);
+        oldIndex.release(buffers);
+        log.info("Compacted {} changed users into the off-heap graph: {} users, {} friendships ({} KB) in {} ms",
+                current.rows.size(), base.size(), base.edgeCount(), base.offHeapBytes() / 1024,
+                (System.nanoTime() - started) / 1_000_000);
+        return compacted;
+    }
+
+    // Readers of older views keep their own log, so every base gets a fresh one
+    private View publishBase(CompactGraph base, long logCapacity) {
+        logEnd = 0;
+        View replaced = view;
+        View published = new View(base, new OffHeapInts(logCapacity, buffers), Map.of(), Map.of(), List.of(),
+                new AtomicInteger());
+        view = published;
+
+        // Buffers the build just now did not take are left to the GC, so at most one old graph is kept
+        buffers.clear();
+        retired.add(replaced);
+        recycleRetired();
+        return published;
+    }
+
+    private void recycleRetired() {
+        for (Iterator<View> it = retired.iterator(); it.hasNext(); ) {
+            View old = it.next();
+            if (old.readers.get() == 0) {
+                old.base.release(buffers);
+                old.log.release(buffers);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * The current view, counted as read until the caller decrements its
+     * readers. Once the count is up the view is checked to still be current:
+     * the writer replaces the view before it checks the count, so a view
+     * it replaced in the meantime is never recycled under the reader.
+     */
+    private View pin() {
+        while (true) {
+            View current = view;
+            current.readers.incrementAndGet();
+            if (view.readers == current.readers) {
+                return current;
+            }
+            current.readers.decrementAndGet();
+        }
+    }
+
+    private long append(OffHeapInts log, int node, int flags, int[] hobbies, int[] friends) {
+        long at = logEnd;
+        log.set(at, node);
+        log.set(at + 1, flags);
+        log.set(at + 2, hobbies.length);
+        log.set(at + 3, friends.length);
+        long next = at + RECORD_HEADER;
+        for (int hobby : hobbies) {
+            log.set(next++, hobby);
+        }
+        for (int friend : friends) {
+            log.set(next++, friend);
+        }
+        logEnd = next;
+        return at;
+    }
+
+    private int[] hobbyIdsOf(User user) {
+        return user.getHobbies().stream()
+                .mapToInt(this::hobbyIdOf)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    private int hobbyIdOf(String hobby) {
+        return hobbyIds.computeIfAbsent(hobby, key -> hobbyIds.size());
+    }
+
+    private static int nodeFor(CompactGraph base, Map<UUID, Integer> addedIds, List<UUID> addedNodes, UUID id) {
+        int node = base.indexOf(id);
+        if (node >= 0) {
+            return node;
+        }
+        return addedIds.computeIfAbsent(id, key -> {
+            addedNodes.add(key);
+            return base.size() + addedNodes.size() - 1;
+        });
+    }
+
+    private static int intersectionSize(int[] a, int[] b) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static UUID parse(String userId) {
+        try {
+            return userId == null ? null : UUID.fromString(userId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The tables read through a cursor in the snapshot transaction, so rows
+     * stream into direct memory without collecting on the heap.
+     */
+    private final class DatabaseRows implements CompactGraph.RowSource {
+
+        public int size() {
+            Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM users", Long.class);
+            return count == null ? 0 : Math.toIntExact(count);
+        }
+
+        public void forEachId(Consumer<UUID> action) {
+            jdbcTemplate.query("SELECT id FROM users", (RowCallbackHandler) rs ->
+                    action.accept(rs.getObject(1, UUID.class)));
+        }
+
+        public void forEachFriendship(BiConsumer<UUID, UUID> action) {
+            jdbcTemplate.query("SELECT user_id1, user_id2 FROM user_friends", (RowCallbackHandler) rs ->
+                    action.accept(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)));
+        }
+
+        public void forEachHobby(ObjIntConsumer<UUID> action) {
+            jdbcTemplate.query("SELECT DISTINCT user_id, hobby FROM user_hobbies", (RowCallbackHandler) rs ->
+                    action.accept(rs.getObject(1, UUID.class), hobbyIdOf(rs.getString(2))));
+        }
+    }
+
+    /**
+     * Immutable state seen by readers: the compact graph plus the log records
+     * written up to when the view was published.
+     */
+    private static final class View {
+
+        private final CompactGraph base;
+        private final OffHeapInts log;
+        // node -> offset of its latest log record
+        private final Map<Integer, Long> rows;
+        // Nodes created since the base was built, numbered from base.size()
+        private final Map<UUID, Integer> addedIds;
+        private final List<UUID> addedNodes;
+        // Readers of any view on this base and log
+        private final AtomicInteger readers;
+
+        private View(CompactGraph base, OffHeapInts log, Map<Integer, Long> rows,
+                     Map<UUID, Integer> addedIds, List<UUID> addedNodes, AtomicInteger readers) {
+            this.base = base;
+            this.log = log;
+            this.rows = rows;
+            this.addedIds = addedIds;
+            this.addedNodes = addedNodes;
+            this.readers = readers;
+        }
+
+        int size() {
+            return base.size() + addedNodes.size();
+        }
+
+        // Live or removed node of the id, or -1
+        int anyNodeOf(UUID id) {
+            int node = base.indexOf(id);
+            return node >= 0 ? node : addedIds.getOrDefault(id, -1);
+        }
+
+        int nodeOf(UUID id) {
+            if (id == null) {
+                return -1;
+            }
+            int node = anyNodeOf(id);
+            return node >= 0 && live(node) ? node : -1;
+        }
+
+        // Nodes created as someone's friend only become live with their own record
+        boolean live(int node) {
+            Long at = rows.get(node);
+            if (at == null) {
+                return node < base.size();
+            }
+            return (log.get(at + 1) & REMOVED) == 0;
+        }
+
+        UUID idOf(int node) {
+            return node < base.size() ? base.idOf(node) : addedNodes.get(node - base.size());
+        }
+
+        int[] neighbors(int node) {
+            Long at = rows.get(node);
+            if (at == null) {
+                return node < base.size() ? base.neighbors(node) : NONE;
+            }
+            return read(at + RECORD_HEADER + log.get(at + 2), log.get(at + 3));
+        }
+
+        int[] hobbies(int node) {
+            Long at = rows.get(node);
+            if (at == null) {
+                return node < base.size() ? base.hobbies(node) : NONE;
+            }
+            return read(at + RECORD_HEADER, log.get(at + 2));
+        }
+
+        // Both hobby rows are sorted, wherever they are stored
+        int sharedHobbies(int node, int[] hobbies) {
+            return intersectionSize(hobbies, hobbies(node));
+        }
+
+        private int[] read(long from, int length) {
+            int[] values = new int[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = log.get(from + i);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package pr.user_relationships.store;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Fixed-length int array in direct memory, split into chunks so it can grow
+ * past the 2 GB limit of a single buffer. Only absolute accessors are used,
+ * so any number of threads may read concurrently with one writer that writes
+ * beyond what it has published to them.
+ */
+final class OffHeapInts {
+
+    private static final int CHUNK_SHIFT = 26;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final ByteBuffer[] buffers;
+    private final IntBuffer[] chunks;
+    private final long length;
+
+    OffHeapInts(long length, DirectBuffers pool) {
+        this.length = length;
+        this.buffers = new ByteBuffer[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT)];
+        this.chunks = new IntBuffer[buffers.length];
+        for (int i = 0; i < chunks.length; i++) {
+            int size = (int) Math.min(CHUNK_SIZE, length - ((long) i << CHUNK_SHIFT));
+            buffers[i] = pool.take(size * Integer.BYTES);
+            chunks[i] = buffers[i].asIntBuffer();
+        }
+    }
+
+    int get(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    void set(long index, int value) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    long length() {
+        return length;
+    }
+
+    long bytes() {
+        return length * Integer.BYTES;
+    }
+
+    // Nothing may read or write this array afterwards
+    void release(DirectBuffers pool) {
+        for (ByteBuffer buffer : buffers) {
+            pool.give(buffer);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package pr.user_relationships.store;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Long counterpart of {@link OffHeapInts}.
+ */
+final class OffHeapLongs {
+
+    private static final int CHUNK_SHIFT = 25;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final ByteBuffer[] buffers;
+    private final LongBuffer[] chunks;
+    private final long length;
+
+    OffHeapLongs(long length, DirectBuffers pool) {
+        this.length = length;
+        this.buffers = new ByteBuffer[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT)];
+        this.chunks = new LongBuffer[buffers.length];
+        for (int i = 0; i < chunks.length; i++) {
+            int size = (int) Math.min(CHUNK_SIZE, length - ((long) i << CHUNK_SHIFT));
+            buffers[i] = pool.take(size * Long.BYTES);
+            chunks[i] = buffers[i].asLongBuffer();
+        }
+    }
+
+    long get(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    void set(long index, long value) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    long length() {
+        return length;
+    }
+
+    long bytes() {
+        return length * Long.BYTES;
+    }
+
+    // Nothing may read or write this array afterwards
+    void release(DirectBuffers pool) {
+        for (ByteBuffer buffer : buffers) {
+            pool.give(buffer);
+        }
+    }
+}
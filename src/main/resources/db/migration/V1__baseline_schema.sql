@@ -0,0 +1,25 @@
+-- Schema as previously generated by spring.jpa.hibernate.ddl-auto=update.
+-- Existing databases are baselined at this version and skip this script.
+
+CREATE TABLE IF NOT EXISTS users (
+    id         VARCHAR(255) NOT NULL,
+    username   VARCHAR(255) NOT NULL,
+    age        INTEGER,
+    created_at TIMESTAMP(6),
+    CONSTRAINT users_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username)
+);
+
+CREATE TABLE IF NOT EXISTS user_hobbies (
+    user_id VARCHAR(255) NOT NULL,
+    hobby   VARCHAR(255),
+    CONSTRAINT fk_user_hobbies_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE IF NOT EXISTS user_friends (
+    user_id   VARCHAR(255) NOT NULL,
+    friend_id VARCHAR(255) NOT NULL,
+    CONSTRAINT user_friends_pkey PRIMARY KEY (user_id, friend_id),
+    CONSTRAINT fk_user_friends_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_user_friends_friend FOREIGN KEY (friend_id) REFERENCES users (id)
+);
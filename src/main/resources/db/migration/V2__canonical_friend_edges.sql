@@ -0,0 +1,47 @@
+-- Store each friendship once (user_id1 < user_id2) and switch ids to native uuid.
+
+-- Foreign keys created by ddl-auto have generated names, so drop them by lookup
+DO $$
+DECLARE
+    fk record;
+BEGIN
+    FOR fk IN
+        SELECT conrelid::regclass AS table_name, conname
+        FROM pg_constraint
+        WHERE contype = 'f' AND confrelid = 'users'::regclass
+    LOOP
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', fk.table_name, fk.conname);
+    END LOOP;
+END $$;
+
+ALTER TABLE users ALTER COLUMN id TYPE uuid USING id::uuid;
+
+ALTER TABLE user_hobbies ALTER COLUMN user_id TYPE uuid USING user_id::uuid;
+ALTER TABLE user_hobbies
+    ADD CONSTRAINT fk_user_hobbies_user FOREIGN KEY (user_id) REFERENCES users (id);
+CREATE INDEX idx_user_hobbies_user ON user_hobbies (user_id);
+
+CREATE TABLE user_friend_edges (
+    user_id1 uuid NOT NULL,
+    user_id2 uuid NOT NULL,
+    CONSTRAINT pk_user_friends PRIMARY KEY (user_id1, user_id2),
+    CONSTRAINT ck_user_friends_canonical CHECK (user_id1 < user_id2),
+    CONSTRAINT fk_user_friends_user1 FOREIGN KEY (user_id1) REFERENCES users (id),
+    CONSTRAINT fk_user_friends_user2 FOREIGN KEY (user_id2) REFERENCES users (id)
+);
+
+-- Both directions of the old storage collapse into one canonical row
+INSERT INTO user_friend_edges (user_id1, user_id2)
+SELECT DISTINCT LEAST(user_id::uuid, friend_id::uuid), GREATEST(user_id::uuid, friend_id::uuid)
+FROM user_friends
+WHERE user_id <> friend_id;
+
+DROP TABLE user_friends;
+ALTER TABLE user_friend_edges RENAME TO user_friends;
+
+-- The primary key covers lookups by user_id1; this covers lookups by user_id2
+CREATE INDEX idx_user_friends_reverse ON user_friends (user_id2, user_id1);
+
+ANALYZE users;
+ANALYZE user_hobbies;
+ANALYZE user_friends;
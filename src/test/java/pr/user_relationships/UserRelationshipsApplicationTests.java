@@ -3,7 +3,8 @@ package pr.user_relationships;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// Each cached test context needs its own outbox journal directory
+@SpringBootTest(properties = "app.outbox.directory=target/test-outbox/${random.uuid}")
 class UserRelationshipsApplicationTests {
 
     @Test
@@ -0,0 +1,93 @@
+package pr.user_relationships.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    @Test
+    void testRejectsWhenSlotsAndQueueAreFull() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter("graph", limits(2, 0, 50));
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        AdmissionLimiter.Stats stats = limiter.stats();
+        assertEquals(2, stats.getInFlight());
+        assertEquals(1, stats.getRejectedQueueFull());
+    }
+
+    @Test
+    void testQueuedRequestIsAdmittedWhenSlotFrees() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter("graph", limits(2, 4, 5_000));
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.tryAcquire();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (limiter.stats().getWaiting() == 0) {
+            Thread.sleep(5);
+        }
+        limiter.release(FAST, false);
+
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertEquals(1, limiter.stats().getQueued());
+    }
+
+    @Test
+    void testQueueWaitTimesOut() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter("graph", limits(2, 4, 20));
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.stats().getRejectedQueueTimeout());
+    }
+
+    @Test
+    void testLimitShrinksOnSlowResponsesAndRecoversOnFastOnes() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter("graph", limits(16, 0, 0));
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(SLOW, false);
+        }
+        assertEquals(2, limiter.stats().getLimit());
+
+        // Fast responses under full use grow the limit again, about one slot per round
+        for (int round = 0; round < 20; round++) {
+            int slots = limiter.stats().getLimit();
+            for (int i = 0; i < slots; i++) {
+                assertTrue(limiter.tryAcquire());
+            }
+            for (int i = 0; i < slots; i++) {
+                limiter.release(FAST, false);
+            }
+        }
+        assertTrue(limiter.stats().getLimit() > 10);
+    }
+
+    private static AdmissionProperties.Limits limits(int initialLimit, int maxQueue, long maxQueueWaitMs) {
+        AdmissionProperties.Limits limits = new AdmissionProperties.Limits();
+        limits.setInitialLimit(initialLimit);
+        limits.setMinLimit(2);
+        limits.setMaxLimit(32);
+        limits.setMaxQueue(maxQueue);
+        limits.setMaxQueueWaitMs(maxQueueWaitMs);
+        limits.setTargetLatencyMs(500);
+        return limits;
+    }
+}
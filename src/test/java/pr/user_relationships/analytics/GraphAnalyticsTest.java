@@ -0,0 +1,129 @@
+package pr.user_relationships.analytics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import pr.user_relationships.entity.User;
+import pr.user_relationships.scoring.FriendGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphAnalyticsTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void testTriangleWithPendant() {
+        // Triangle 0-1-2 plus 3 hanging off 0
+        GraphAnalytics.Metrics metrics = GraphAnalytics.compute(
+                graph(4, new int[][]{{0, 1}, {1, 2}, {2, 0}, {0, 3}}), pool, 0);
+
+        assertEquals(1, metrics.triangles);
+        // 3 closed triples out of 3 + 1 + 1 connected triples
+        assertEquals(0.6, metrics.globalClustering, 1e-9);
+        assertEquals((1.0 / 3 + 1 + 1 + 0) / 4, metrics.averageLocalClustering, 1e-9);
+    }
+
+    @Test
+    void testTriangleCountMatchesBruteForce() {
+        int n = 3_000;
+        Random random = new Random(11);
+        Set<Long> seen = new HashSet<>();
+        List<int[]> edges = new ArrayList<>();
+        // A few hubs plus random edges, so degree ordering matters
+        for (int i = 0; i < 30_000; i++) {
+            int a = random.nextInt(10) == 0 ? random.nextInt(20) : random.nextInt(n);
+            int b = random.nextInt(n);
+            if (a != b && seen.add((long) Math.min(a, b) * n + Math.max(a, b))) {
+                edges.add(new int[]{a, b});
+            }
+        }
+        FriendGraph graph = graph(n, edges.toArray(new int[0][]));
+
+        assertEquals(bruteForceTriangles(n, seen), TriangleCounter.count(graph, pool).triangles);
+    }
+
+    @Test
+    void testCountersFollowIncrementalChanges() {
+        User alice = user("a", "chess", "reading");
+        User bob = user("b", "chess");
+        User carol = user("c", "hiking");
+        GraphCounters counters = new GraphCounters();
+        counters.rebuild(List.of(alice, bob, carol));
+
+        alice.addFriend(bob);
+        alice.addFriend(carol);
+        counters.upsert(List.of(alice, bob, carol));
+
+        GraphCounters.Snapshot snapshot = counters.snapshot();
+        assertEquals(3, snapshot.userCount);
+        assertEquals(2, snapshot.friendshipCount);
+        assertEquals(2, snapshot.maxDegree);
+        assertEquals(Map.of(1, 2, 2, 1), snapshot.degreeHistogram);
+        assertEquals(List.of("chess", "hiking", "reading"), new ArrayList<>(snapshot.hobbyFrequency.keySet()));
+
+        // Cascade delete of alice: her friends are re-read without her
+        bob.removeFriend(alice);
+        carol.removeFriend(alice);
+        counters.remove(List.of("a"));
+        counters.upsert(List.of(bob, carol));
+
+        snapshot = counters.snapshot();
+        assertEquals(2, snapshot.userCount);
+        assertEquals(0, snapshot.friendshipCount);
+        assertEquals(Map.of(0, 2), snapshot.degreeHistogram);
+        assertEquals(Map.of("chess", 1, "hiking", 1), snapshot.hobbyFrequency);
+    }
+
+    private static long bruteForceTriangles(int n, Set<Long> edges) {
+        List<Set<Integer>> adjacency = IntStream.range(0, n).mapToObj(i -> new HashSet<Integer>())
+                .collect(Collectors.toList());
+        for (long edge : edges) {
+            int a = (int) (edge / n);
+            int b = (int) (edge % n);
+            adjacency.get(a).add(b);
+            adjacency.get(b).add(a);
+        }
+        long triangles = 0;
+        for (int a = 0; a < n; a++) {
+            for (int b : adjacency.get(a)) {
+                if (b <= a) {
+                    continue;
+                }
+                for (int c : adjacency.get(b)) {
+                    if (c > b && adjacency.get(a).contains(c)) {
+                        triangles++;
+                    }
+                }
+            }
+        }
+        return triangles;
+    }
+
+    private static FriendGraph graph(int n, int[][] edges) {
+        List<String> ids = IntStream.range(0, n).mapToObj(i -> "u" + i).collect(Collectors.toList());
+        List<Object[]> pairs = Arrays.stream(edges)
+                .map(edge -> new Object[]{"u" + edge[0], "u" + edge[1]})
+                .collect(Collectors.toList());
+        return FriendGraph.build(ids, pairs);
+    }
+
+    private static User user(String id, String... hobbies) {
+        return User.builder().id(id).username(id).age(30).hobbies(Arrays.asList(hobbies)).build();
+    }
+}
@@ -0,0 +1,111 @@
+package pr.user_relationships.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import pr.user_relationships.config.ReadWriteRoutingDataSource;
+import pr.user_relationships.dto.GraphResponse;
+import pr.user_relationships.dto.UserDTO;
+import pr.user_relationships.service.UserService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+class GraphResponseCacheTest {
+
+    private final UserService userService = mock(UserService.class);
+    private final GraphResponseCache cache = new GraphResponseCache(userService, new ObjectMapper());
+
+    @Test
+    void testConcurrentRequestsShareOneComputation() throws Exception {
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger computations = new AtomicInteger();
+        when(userService.getGraphData(any(), anyBoolean())).thenAnswer(invocation -> {
+            computations.incrementAndGet();
+            computing.countDown();
+            release.await();
+            return graph("alice");
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<GraphResponseCache.CachedGraph>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> cache.get(false)));
+            }
+            assertTrue(computing.await(5, TimeUnit.SECONDS));
+            // Give the other requests time to pile up behind the running computation
+            Thread.sleep(100);
+            release.countDown();
+
+            GraphResponseCache.CachedGraph first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<GraphResponseCache.CachedGraph> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    void testChangeInvalidatesCachedBytes() {
+        when(userService.getGraphData(any(), anyBoolean())).thenReturn(graph("alice"), graph("bob"));
+
+        GraphResponseCache.CachedGraph before = cache.get(false);
+        assertSame(before, cache.get(false));
+
+        cache.upsert(List.of());
+        GraphResponseCache.CachedGraph after = cache.get(false);
+
+        assertNotSame(before, after);
+        assertNotEquals(before.etag(false), after.etag(false));
+        assertTrue(after.matches("\"other\", " + after.etag(true)));
+        assertFalse(after.matches(before.etag(false)));
+        verify(userService, times(2)).getGraphData(any(), eq(false));
+    }
+
+    @Test
+    void testFailedComputationIsRetried() {
+        when(userService.getGraphData(any(), anyBoolean()))
+                .thenThrow(new IllegalStateException("database down"))
+                .thenReturn(graph("alice"));
+
+        assertThrows(IllegalStateException.class, () -> cache.get(true));
+        assertNotNull(cache.get(true));
+    }
+
+    @Test
+    void testGraphIsReadOnPrimary() {
+        // The replica may not have the change behind the new version yet
+        AtomicBoolean primaryForced = new AtomicBoolean();
+        when(userService.getGraphData(any(), anyBoolean())).thenAnswer(invocation -> {
+            primaryForced.set(ReadWriteRoutingDataSource.isPrimaryForced());
+            return graph("alice");
+        });
+
+        cache.get(false);
+
+        assertTrue(primaryForced.get());
+        assertFalse(ReadWriteRoutingDataSource.isPrimaryForced());
+    }
+
+    private static GraphResponse graph(String username) {
+        return GraphResponse.builder()
+                .users(List.of(UserDTO.builder().id("uuid-1").username(username).build()))
+                .relationships(List.of())
+                .build();
+    }
+}
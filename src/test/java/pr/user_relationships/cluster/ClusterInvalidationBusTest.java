@@ -0,0 +1,143 @@
+package pr.user_relationships.cluster;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import pr.user_relationships.event.RemoteUserGraphChangedEvent;
+import pr.user_relationships.event.UserGraphChangedEvent;
+import pr.user_relationships.index.IndexMaintainer;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ClusterInvalidationBusTest {
+
+    private IndexMaintainer indexMaintainer;
+    private ApplicationEventPublisher eventPublisher;
+    private ClusterInvalidationBus bus;
+
+    @BeforeEach
+    void setUp() {
+        indexMaintainer = mock(IndexMaintainer.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        bus = new ClusterInvalidationBus(new ClusterInvalidationProperties(), new DataSourceProperties(),
+                indexMaintainer, eventPublisher, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void testMessageRoundTrip() {
+        UserGraphChangedEvent event = new UserGraphChangedEvent(
+                UserGraphChangedEvent.Type.USER_DELETED, "uuid-1", null, List.of("uuid-2", "uuid-3"));
+
+        ClusterChangeMessage decoded = ClusterChangeMessage.decode(ClusterChangeMessage.of("node-a", 7, event).encode());
+
+        assertEquals("node-a", decoded.getNodeId());
+        assertEquals(7, decoded.getSeq());
+        assertEquals(UserGraphChangedEvent.Type.USER_DELETED, decoded.getType());
+        assertEquals("uuid-1", decoded.getUserId());
+        assertNull(decoded.getOtherUserId());
+        assertEquals(List.of("uuid-2", "uuid-3"), decoded.getAffectedUserIds());
+    }
+
+    @Test
+    void testOversizedChangeIsSentAsReload() {
+        List<String> manyFriends = Collections.nCopies(500, "550e8400-e29b-41d4-a716-446655440000");
+        UserGraphChangedEvent event = new UserGraphChangedEvent(
+                UserGraphChangedEvent.Type.USER_UPDATED, "uuid-1", null, manyFriends);
+
+        ClusterChangeMessage decoded = ClusterChangeMessage.decode(ClusterChangeMessage.of("node-a", 1, event).encode());
+
+        assertTrue(decoded.isReload());
+    }
+
+    @Test
+    void testRemoteChangesAreRepublishedInOrder() {
+        bus.handle("node-a;1;USERS_LINKED;uuid-1;uuid-2;");
+        bus.handle("node-a;2;USERS_UNLINKED;uuid-1;uuid-2;");
+        bus.handle("node-b;41;USER_CREATED;uuid-3;;");
+
+        verify(eventPublisher, times(3)).publishEvent(any(RemoteUserGraphChangedEvent.class));
+        verify(indexMaintainer, never()).rebuildAll();
+    }
+
+    @Test
+    void testSequenceGapTriggersReload() {
+        bus.handle("node-a;1;USERS_LINKED;uuid-1;uuid-2;");
+        bus.handle("node-a;3;USERS_UNLINKED;uuid-1;uuid-2;");
+
+        verify(indexMaintainer).rebuildAll();
+        verify(eventPublisher, times(1)).publishEvent(any(RemoteUserGraphChangedEvent.class));
+
+        // Back in sequence after the reload
+        bus.handle("node-a;4;USER_CREATED;uuid-3;;");
+        verify(indexMaintainer, times(1)).rebuildAll();
+    }
+
+    @Test
+    void testCommitsOnlyQueueChangesForTheSender() throws Exception {
+        bus.onUserGraphChanged(new UserGraphChangedEvent(
+                UserGraphChangedEvent.Type.USERS_LINKED, "uuid-1", "uuid-2", List.of()));
+        bus.onUserGraphChanged(new RemoteUserGraphChangedEvent(
+                "node-b", UserGraphChangedEvent.Type.USER_CREATED, "uuid-3", null, List.of()));
+
+        ClusterChangeMessage message = bus.nextMessage(0);
+        assertEquals(1, message.getSeq());
+        assertEquals(bus.getNodeId(), message.getNodeId());
+        assertEquals(UserGraphChangedEvent.Type.USERS_LINKED, message.getType());
+        // Remote changes are never sent on
+        assertNull(bus.nextMessage(0));
+    }
+
+    @Test
+    void testFullSendQueueIsReplacedByReload() throws Exception {
+        ClusterInvalidationProperties properties = new ClusterInvalidationProperties();
+        properties.setSendQueueCapacity(2);
+        bus = new ClusterInvalidationBus(properties, new DataSourceProperties(),
+                indexMaintainer, eventPublisher, mock(PlatformTransactionManager.class));
+        for (int i = 0; i < 3; i++) {
+            bus.onUserGraphChanged(new UserGraphChangedEvent(
+                    UserGraphChangedEvent.Type.USER_CREATED, "uuid-" + i, null, List.of()));
+        }
+
+        ClusterChangeMessage reload = bus.nextMessage(0);
+        assertTrue(reload.isReload());
+        assertEquals(1, reload.getSeq());
+        assertNull(bus.nextMessage(0));
+
+        bus.onUserGraphChanged(new UserGraphChangedEvent(
+                UserGraphChangedEvent.Type.USER_CREATED, "uuid-4", null, List.of()));
+        assertEquals(2, bus.nextMessage(0).getSeq());
+    }
+
+    @Test
+    void testSilentNodesAreForgotten() {
+        bus.handle("node-a;1;USERS_LINKED;uuid-1;uuid-2;");
+        bus.handle("node-b;1;USER_CREATED;uuid-3;;");
+        assertEquals(2, bus.knownNodeCount());
+
+        bus.evictSilentNodes(System.nanoTime());
+        assertEquals(2, bus.knownNodeCount());
+        bus.evictSilentNodes(System.nanoTime() + Duration.ofHours(2).toNanos());
+        assertEquals(0, bus.knownNodeCount());
+
+        // A forgotten node starts afresh instead of looking like a gap
+        bus.handle("node-a;9;USER_CREATED;uuid-4;;");
+        verify(indexMaintainer, never()).rebuildAll();
+        assertEquals(1, bus.knownNodeCount());
+    }
+
+    @Test
+    void testOwnAndMalformedNotificationsAreIgnored() {
+        bus.handle(bus.getNodeId() + ";1;USER_CREATED;uuid-1;;");
+        bus.handle("garbage");
+
+        verifyNoInteractions(eventPublisher, indexMaintainer);
+    }
+}
@@ -0,0 +1,100 @@
+package pr.user_relationships.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica;
+    private ReadWriteRoutingDataSource routingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+
+        routingDataSource = new ReadWriteRoutingDataSource(primary, replica);
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @Test
+    void testReadOnlyTransactionsGoToReplica() {
+        assertEquals("replica", readOnly.execute(status -> whoAmI()));
+        assertEquals("primary", readWrite.execute(status -> whoAmI()));
+        // Outside a transaction nothing is known about intent, so use the primary
+        assertEquals("primary", whoAmI());
+    }
+
+    @Test
+    void testPrimaryHintKeepsReadOnlyTransactionsOnPrimary() {
+        assertEquals("primary", ReadWriteRoutingDataSource.onPrimary(() -> readOnly.execute(status -> {
+            assertTrue(status.isReadOnly());
+            return whoAmI();
+        })));
+        // The hint ends with the action
+        assertEquals("replica", readOnly.execute(status -> whoAmI()));
+    }
+
+    @Test
+    void testLaggingReplicaFallsBackToPrimary() {
+        ReplicaProperties properties = new ReplicaProperties();
+        properties.setMaxLag(Duration.ofSeconds(5));
+        properties.setLagQuery("SELECT lag_seconds FROM replica_lag");
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, routingDataSource, properties);
+
+        new JdbcTemplate(replica).update("UPDATE replica_lag SET lag_seconds = 30");
+        monitor.checkLag();
+        assertFalse(routingDataSource.isReplicaAvailable());
+        assertEquals("primary", readOnly.execute(status -> whoAmI()));
+
+        new JdbcTemplate(replica).update("UPDATE replica_lag SET lag_seconds = 0.5");
+        monitor.checkLag();
+        assertTrue(routingDataSource.isReplicaAvailable());
+        assertEquals("replica", readOnly.execute(status -> whoAmI()));
+    }
+
+    @Test
+    void testUnreachableReplicaFallsBackToPrimary() {
+        ReplicaProperties properties = new ReplicaProperties();
+        properties.setLagQuery("SELECT lag_seconds FROM missing_table");
+        new ReplicaLagMonitor(replica, routingDataSource, properties).checkLag();
+
+        assertEquals("primary", readOnly.execute(status -> whoAmI()));
+    }
+
+    private String whoAmI() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbc.update("INSERT INTO node VALUES (?)", name);
+        jdbc.execute("CREATE TABLE replica_lag (lag_seconds DOUBLE PRECISION)");
+        jdbc.update("INSERT INTO replica_lag VALUES (0)");
+        return dataSource;
+    }
+}
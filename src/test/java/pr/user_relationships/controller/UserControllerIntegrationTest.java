@@ -1,6 +1,9 @@
 package pr.user_relationships.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,18 +12,30 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import pr.user_relationships.dto.BatchGetRequest;
 import pr.user_relationships.dto.CreateUserRequest;
+import pr.user_relationships.dto.ExportRequest;
 import pr.user_relationships.dto.LinkRequest;
 import pr.user_relationships.dto.UpdateUserRequest;
+import pr.user_relationships.export.ExportCompression;
+import pr.user_relationships.export.ExportFormat;
+import pr.user_relationships.index.IndexMaintainer;
+import pr.user_relationships.outbox.OutboxPublisher;
 import pr.user_relationships.repository.UserRepository;
 
+import java.io.ByteArrayInputStream;
 import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
-@SpringBootTest
+// Each cached test context needs its own outbox journal directory
+@SpringBootTest(properties = "app.outbox.directory=target/test-outbox/${random.uuid}")
 @AutoConfigureMockMvc
 class UserControllerIntegrationTest {
 
@@ -33,9 +48,20 @@ class UserControllerIntegrationTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private IndexMaintainer indexMaintainer;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private OutboxPublisher outboxPublisher;
+
     @BeforeEach
     void setUp() {
         userRepository.deleteAll();
+        // deleteAll bypasses UserService, so in-memory indexes are refreshed by hand
+        indexMaintainer.rebuildAll();
     }
 
     @Test
@@ -81,6 +107,10 @@ class UserControllerIntegrationTest {
         // 5. Verify deletion
         mockMvc.perform(get("/api/users/" + userId))
                 .andExpect(status().isNotFound());
+
+        // Ids that are not UUIDs never match a user
+        mockMvc.perform(get("/api/users/abc"))
+                .andExpect(status().isNotFound());
     }
 
     @Test
@@ -147,6 +177,297 @@ class UserControllerIntegrationTest {
                 .andExpect(status().isNoContent());
     }
 
+    @Test
+    void testCascadeDeleteRemovesFriendships() throws Exception {
+        String aliceId = createUser("alice", Arrays.asList("reading", "gaming"));
+        String bobId = createUser("bob", Arrays.asList("gaming"));
+        String carolId = createUser("carol", Arrays.asList("reading"));
+
+        for (String friendId : Arrays.asList(bobId, carolId)) {
+            mockMvc.perform(post("/api/users/" + aliceId + "/link")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new LinkRequest(friendId))))
+                    .andExpect(status().isOk());
+        }
+
+        // Cascade delete removes alice together with her friendships
+        mockMvc.perform(delete("/api/users/" + aliceId).param("cascade", "true"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/users/" + aliceId))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/api/users/" + bobId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.friends", hasSize(0)))
+                .andExpect(jsonPath("$.popularityScore").value(0.0));
+
+        mockMvc.perform(get("/api/graph"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(2)))
+                .andExpect(jsonPath("$.relationships", hasSize(0)));
+    }
+
+    @Test
+    void testSearchAndFilteredGraph() throws Exception {
+        String aliceId = createUser("alice", Arrays.asList("chess", "reading"));
+        String bobId = createUser("bob", Arrays.asList("chess"));
+        createUser("carol", Arrays.asList("hiking"));
+
+        mockMvc.perform(post("/api/users/" + aliceId + "/link")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new LinkRequest(bobId))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/users/search").param("hobby", "chess").param("minScore", "1.5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+
+        mockMvc.perform(get("/api/users/search").param("hobby", "chess").param("hobby", "reading"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].username").value("alice"));
+
+        mockMvc.perform(get("/api/graph").param("hobby", "chess"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(2)))
+                .andExpect(jsonPath("$.relationships", hasSize(1)));
+
+        // Scores in the index follow the unlink
+        mockMvc.perform(delete("/api/users/" + aliceId + "/unlink")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new LinkRequest(bobId))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/users/search").param("minScore", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    void testGraphEtagAndNotModified() throws Exception {
+        String aliceId = createUser("alice", Arrays.asList("chess"));
+
+        MvcResult first = mockMvc.perform(get("/api/graph"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.users", hasSize(1)))
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/graph").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        MvcResult gzipped = mockMvc.perform(get("/api/graph").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn();
+        try (GZIPInputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+            assertArrayEquals(first.getResponse().getContentAsByteArray(), in.readAllBytes());
+        }
+
+        // A mutation invalidates the cached response
+        createUser("bob", Arrays.asList("chess"));
+        mockMvc.perform(get("/api/graph").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)))
+                .andExpect(jsonPath("$.users", hasSize(2)));
+
+        mockMvc.perform(delete("/api/users/" + aliceId)).andExpect(status().isNoContent());
+
+        // Graph requests went through the admission limiter
+        mockMvc.perform(get("/api/admin/admission"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'graph')].admitted", hasItem(greaterThanOrEqualTo(4))));
+    }
+
+    @Test
+    void testGraphStats() throws Exception {
+        String aliceId = createUser("alice", Arrays.asList("chess", "reading"));
+        String bobId = createUser("bob", Arrays.asList("chess"));
+        String carolId = createUser("carol", Arrays.asList("hiking"));
+
+        for (String[] pair : new String[][]{{aliceId, bobId}, {bobId, carolId}, {carolId, aliceId}}) {
+            mockMvc.perform(post("/api/users/" + pair[0] + "/link")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new LinkRequest(pair[1]))))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/api/graph/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userCount").value(3))
+                .andExpect(jsonPath("$.friendshipCount").value(3))
+                .andExpect(jsonPath("$.maxDegree").value(2))
+                .andExpect(jsonPath("$.degreeHistogram.2").value(3))
+                .andExpect(jsonPath("$.hobbyFrequency.chess").value(2));
+    }
+
+    @Test
+    void testBatchGetUsers() throws Exception {
+        String aliceId = createUser("alice", Arrays.asList("chess"));
+        String bobId = createUser("bob", Arrays.asList("hiking"));
+        String missingId = "00000000-0000-0000-0000-000000000000";
+
+        mockMvc.perform(post("/api/users:batchGet")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new BatchGetRequest(List.of(bobId, missingId, aliceId)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[*].username", contains("bob", "alice")))
+                .andExpect(jsonPath("$.missingIds", contains(missingId)));
+
+        mockMvc.perform(post("/api/users:batchGet")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatchGetRequest(List.of()))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.validationErrors.ids").exists());
+    }
+
+    @Test
+    void testBatchGetRunsOneQueryPerTable() throws Exception {
+        String aliceId = createUser("alice", Arrays.asList("chess"));
+        String bobId = createUser("bob", Arrays.asList("chess", "hiking"));
+        String carolId = createUser("carol", Arrays.asList("hiking"));
+        String daveId = createUser("dave", Arrays.asList("go"));
+        for (String[] pair : new String[][]{{aliceId, bobId}, {bobId, carolId}, {carolId, daveId}}) {
+            mockMvc.perform(post("/api/users/" + pair[0] + "/link")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new LinkRequest(pair[1]))))
+                    .andExpect(status().isOk());
+        }
+
+        // Statistics are global, so the links are published first rather than during the batch
+        outboxPublisher.publish();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            mockMvc.perform(post("/api/users:batchGet")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(
+                                    new BatchGetRequest(List.of(aliceId, bobId, carolId)))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.users[*].username", contains("alice", "bob", "carol")))
+                    .andExpect(jsonPath("$.users[1].friends", containsInAnyOrder(aliceId, carolId)))
+                    .andExpect(jsonPath("$.users[1].hobbies", containsInAnyOrder("chess", "hiking")))
+                    .andExpect(jsonPath("$.users[2].friends", containsInAnyOrder(bobId, daveId)));
+
+            // Users, friendships and hobbies, however the requested users are connected
+            assertEquals(3, statistics.getPrepareStatementCount());
+            assertEquals(0, statistics.getEntityLoadCount());
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    void testUserProfile() throws Exception {
+        String aliceId = createUser("alice", Arrays.asList("chess"));
+        String bobId = createUser("bob", Arrays.asList("chess"));
+        String carolId = createUser("carol", Arrays.asList("hiking"));
+        String daveId = createUser("dave", Arrays.asList("hiking"));
+
+        for (String[] pair : new String[][]{{aliceId, bobId}, {bobId, carolId}, {carolId, aliceId}, {carolId, daveId}}) {
+            mockMvc.perform(post("/api/users/" + pair[0] + "/link")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new LinkRequest(pair[1]))))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/api/users/" + aliceId + "/profile"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.user.username").value("alice"))
+                .andExpect(jsonPath("$.friends[*].username", containsInAnyOrder("bob", "carol")))
+                .andExpect(jsonPath("$.mutualFriendCounts." + bobId).value(1))
+                .andExpect(jsonPath("$.mutualFriendCounts." + carolId).value(1))
+                .andExpect(jsonPath("$.suggestions[0].username").value("dave"))
+                .andExpect(jsonPath("$.suggestions[0].mutualFriends").value(1))
+                .andExpect(jsonPath("$.incompleteParts", hasSize(0)));
+
+        mockMvc.perform(get("/api/users/00000000-0000-0000-0000-000000000000/profile"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGraphExport() throws Exception {
+        String aliceId = createUser("alice", Arrays.asList("chess"));
+        String bobId = createUser("bob", Arrays.asList("chess"));
+        mockMvc.perform(post("/api/users/" + aliceId + "/link")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new LinkRequest(bobId))))
+                .andExpect(status().isOk());
+
+        MvcResult started = mockMvc.perform(post("/api/exports")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new ExportRequest(ExportFormat.CSV, ExportCompression.NONE))))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andReturn();
+        String exportId = objectMapper.readTree(started.getResponse().getContentAsString()).get("id").asText();
+
+        String status = "QUEUED";
+        for (int attempt = 0; attempt < 100 && !status.equals("COMPLETED") && !status.equals("FAILED"); attempt++) {
+            Thread.sleep(50);
+            MvcResult polled = mockMvc.perform(get("/api/exports/" + exportId))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            status = objectMapper.readTree(polled.getResponse().getContentAsString()).get("status").asText();
+        }
+        assertEquals("COMPLETED", status);
+
+        String lower = aliceId.compareTo(bobId) < 0 ? aliceId : bobId;
+        String higher = lower.equals(aliceId) ? bobId : aliceId;
+        mockMvc.perform(get("/api/exports/" + exportId + "/file"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", containsString(".csv")))
+                .andExpect(content().string("source,target\n" + lower + "," + higher + "\n"));
+
+        mockMvc.perform(get("/api/exports/00000000-0000-0000-0000-000000000000"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testOutboxChangeFeed() throws Exception {
+        MvcResult before = mockMvc.perform(get("/api/admin/outbox"))
+                .andExpect(status().isOk())
+                .andReturn();
+        long fromOffset = objectMapper.readTree(before.getResponse().getContentAsString()).get("endOffset").asLong();
+
+        String aliceId = createUser("alice", Arrays.asList("chess"));
+        String bobId = createUser("bob", Arrays.asList("chess"));
+        mockMvc.perform(post("/api/users/" + aliceId + "/link")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new LinkRequest(bobId))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/admin/outbox/changes").param("fromOffset", String.valueOf(fromOffset)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.records[*].type", contains("USER_CREATED", "USER_CREATED", "USERS_LINKED")))
+                .andExpect(jsonPath("$.records[0].offset").value(fromOffset))
+                .andExpect(jsonPath("$.records[2].userId").value(aliceId))
+                .andExpect(jsonPath("$.records[2].otherUserId").value(bobId));
+
+        mockMvc.perform(post("/api/admin/outbox/replay").param("fromOffset", String.valueOf(fromOffset)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.publishedOffset").value(fromOffset));
+
+        mockMvc.perform(get("/api/admin/outbox/changes").param("fromOffset", String.valueOf(fromOffset + 1)))
+                .andExpect(status().isBadRequest());
+    }
+
+    private String createUser(String username, List<String> hobbies) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new CreateUserRequest(username, 25, hobbies))))
+                .andExpect(status().isCreated())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asText();
+    }
+
     @Test
     void testValidationErrors() throws Exception {
         // Test missing username
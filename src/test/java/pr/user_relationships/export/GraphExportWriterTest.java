@@ -0,0 +1,86 @@
+package pr.user_relationships.export;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphExportWriterTest {
+
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID BOB = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID CAROL = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    // Smaller than a single record, so every write goes through a flush
+    private static final int TINY_BUFFER = 16;
+
+    @Test
+    void testGraphMlIsValidXmlWithEscapedUsernames() throws Exception {
+        byte[] output = export(ExportFormat.GRAPHML, ExportCompression.NONE);
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(output));
+        assertEquals(3, document.getElementsByTagName("node").getLength());
+        assertEquals(2, document.getElementsByTagName("edge").getLength());
+        assertEquals("bob & <co>", document.getElementsByTagName("node").item(1).getFirstChild().getTextContent());
+        // carol has no age, so her node only carries the username
+        assertEquals(2, document.getElementsByTagName("node").item(1).getChildNodes().getLength());
+        assertEquals(1, document.getElementsByTagName("node").item(2).getChildNodes().getLength());
+    }
+
+    @Test
+    void testCsvEdgeList() throws Exception {
+        String csv = new String(export(ExportFormat.CSV, ExportCompression.NONE), StandardCharsets.UTF_8);
+
+        assertEquals("source,target\n" + ALICE + "," + BOB + "\n" + BOB + "," + CAROL + "\n", csv);
+    }
+
+    @Test
+    void testBinaryEdgeListRoundTripsThroughGzip() throws Exception {
+        byte[] compressed = export(ExportFormat.BINARY, ExportCompression.GZIP);
+        ByteBuffer data = ByteBuffer.wrap(new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes());
+
+        assertEquals(8 + 2 * 32, data.remaining());
+        assertEquals(BinaryEdgeListWriter.MAGIC, data.getInt());
+        assertEquals(BinaryEdgeListWriter.VERSION, data.getInt());
+        assertEquals(ALICE, new UUID(data.getLong(), data.getLong()));
+        assertEquals(BOB, new UUID(data.getLong(), data.getLong()));
+        assertEquals(BOB, new UUID(data.getLong(), data.getLong()));
+        assertEquals(CAROL, new UUID(data.getLong(), data.getLong()));
+    }
+
+    @Test
+    void testEscapeLeavesPlainTextUntouched() {
+        String plain = "alice";
+        assertSame(plain, GraphMlWriter.escape(plain));
+        assertEquals("a&quot;b&apos;c", GraphMlWriter.escape("a\"b'c"));
+    }
+
+    private static byte[] export(ExportFormat format, ExportCompression compression) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ChannelSink sink = new ChannelSink(compression.wrap(Channels.newChannel(out)), TINY_BUFFER)) {
+            GraphExportWriter writer = format.newWriter(sink);
+            writer.begin();
+            if (format.includesNodes()) {
+                writer.node(ALICE, "alice", 25);
+                writer.node(BOB, "bob & <co>", 30);
+                writer.node(CAROL, "carol", null);
+            }
+            writer.beginEdges();
+            writer.edge(ALICE, BOB);
+            writer.edge(BOB, CAROL);
+            writer.end();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,112 @@
+package pr.user_relationships.index;
+
+import org.junit.jupiter.api.Test;
+import pr.user_relationships.entity.User;
+import pr.user_relationships.event.ChangeJournalBatchEvent;
+import pr.user_relationships.event.UserGraphChangedEvent;
+import pr.user_relationships.outbox.ChangeRecord;
+import pr.user_relationships.repository.UserLoader;
+import pr.user_relationships.scoring.FriendsAndHobbiesScorer;
+import pr.user_relationships.scoring.PopularityProperties;
+import pr.user_relationships.scoring.PopularityScores;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class IndexMaintainerTest {
+
+    private static final String ALICE = "00000000-0000-0000-0000-000000000001";
+    private static final String BOB = "00000000-0000-0000-0000-000000000002";
+    private static final String CAROL = "00000000-0000-0000-0000-000000000003";
+
+    @Test
+    void testOlderReadIsNotAppliedAfterNewerOne() throws Exception {
+        UserLoader userLoader = mock(UserLoader.class);
+        CountDownLatch firstReadStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstRead = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+        when(userLoader.findAllWithFriendHobbiesById(anyCollection())).thenAnswer(invocation -> {
+            int read = reads.incrementAndGet();
+            if (read == 1) {
+                firstReadStarted.countDown();
+                assertTrue(releaseFirstRead.await(5, TimeUnit.SECONDS));
+            }
+            // Each read sees the user at the version of the commits before it
+            return List.of(User.builder().id(ALICE).username("alice-v" + read).age(30)
+                    .hobbies(List.of()).build());
+        });
+
+        List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        UserIndex index = new UserIndex() {
+            @Override
+            public void rebuild(Collection<User> users) {
+            }
+
+            @Override
+            public void upsert(Collection<User> users) {
+                users.forEach(user -> applied.add(user.getUsername()));
+            }
+
+            @Override
+            public void remove(Collection<String> userIds) {
+            }
+        };
+        IndexMaintainer maintainer = new IndexMaintainer(null, userLoader, popularityScores(), List.of(index));
+        UserGraphChangedEvent link = new UserGraphChangedEvent(
+                UserGraphChangedEvent.Type.USERS_LINKED, ALICE, BOB, List.of());
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> maintainer.apply(link));
+        assertTrue(firstReadStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> maintainer.apply(link));
+
+        // The second change has to wait for the first read and apply to finish
+        Thread.sleep(100);
+        assertEquals(1, reads.get());
+        releaseFirstRead.countDown();
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("alice-v1", "alice-v2"), applied);
+    }
+
+    @Test
+    void testJournalBatchRefreshesNamedUsersFromCurrentRows() {
+        UserLoader userLoader = mock(UserLoader.class);
+        // carol's deletion committed, while the link between alice and bob never did
+        when(userLoader.findAllWithFriendHobbiesById(anyCollection())).thenReturn(List.of(
+                User.builder().id(ALICE).username("alice").age(30).hobbies(List.of()).build(),
+                User.builder().id(BOB).username("bob").age(31).hobbies(List.of()).build()));
+        UserIndex index = mock(UserIndex.class);
+        IndexMaintainer maintainer = new IndexMaintainer(null, userLoader, popularityScores(), List.of(index));
+
+        Instant now = Instant.now();
+        ChangeJournalBatchEvent batch = new ChangeJournalBatchEvent(List.of(
+                new ChangeRecord(0, 54, now, UserGraphChangedEvent.Type.USERS_LINKED, ALICE, BOB, List.of()),
+                new ChangeRecord(54, 108, now, UserGraphChangedEvent.Type.USER_DELETED, CAROL, null, List.of(ALICE))),
+                108);
+        maintainer.applyJournal(batch);
+        // A replayed batch leads to the same result
+        maintainer.applyJournal(batch);
+
+        verify(userLoader, times(2)).findAllWithFriendHobbiesById(Set.of(ALICE, BOB, CAROL));
+        verify(index, times(2)).remove(List.of(CAROL));
+        verify(index, times(2)).upsert(argThat(users -> users.stream().map(User::getId).toList()
+                .equals(List.of(ALICE, BOB))));
+    }
+
+    private static PopularityScores popularityScores() {
+        return new PopularityScores(new PopularityProperties(), List.of(new FriendsAndHobbiesScorer()), null, null, null);
+    }
+}
@@ -0,0 +1,109 @@
+package pr.user_relationships.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntBitmapTest {
+
+    @Test
+    void testMatchesTreeSetAcrossContainerConversions() {
+        Random random = new Random(3);
+        IntBitmap bitmap = new IntBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        // Dense enough in the first chunk to switch to a bitmap container and back
+        for (int i = 0; i < 50_000; i++) {
+            int value = random.nextInt(10) < 8 ? random.nextInt(6_000) : random.nextInt(1 << 20);
+            if (random.nextInt(4) == 0) {
+                bitmap.remove(value);
+                expected.remove(value);
+            } else {
+                bitmap.add(value);
+                expected.add(value);
+            }
+        }
+
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertEquals(new ArrayList<>(expected), toList(bitmap));
+        for (int value = 0; value < 6_000; value++) {
+            assertEquals(expected.contains(value), bitmap.contains(value));
+        }
+    }
+
+    @Test
+    void testAndOr() {
+        Random random = new Random(5);
+        IntBitmap a = new IntBitmap();
+        IntBitmap b = new IntBitmap();
+        TreeSet<Integer> setA = new TreeSet<>();
+        TreeSet<Integer> setB = new TreeSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            int valueA = random.nextInt(200_000);
+            int valueB = i % 2 == 0 ? random.nextInt(8_000) : random.nextInt(200_000);
+            a.add(valueA);
+            setA.add(valueA);
+            b.add(valueB);
+            setB.add(valueB);
+        }
+
+        TreeSet<Integer> intersection = new TreeSet<>(setA);
+        intersection.retainAll(setB);
+        TreeSet<Integer> union = new TreeSet<>(setA);
+        union.addAll(setB);
+
+        assertEquals(new ArrayList<>(intersection), toList(a.and(b)));
+        assertEquals(new ArrayList<>(union), toList(a.or(b)));
+        assertEquals(new ArrayList<>(setA), toList(a.copy()));
+    }
+
+    @Test
+    void testAddAllMergesInPlace() {
+        Random random = new Random(9);
+        IntBitmap accumulator = new IntBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        // Many small bitmaps, so accumulated containers grow from arrays into bitsets
+        for (int i = 0; i < 300; i++) {
+            IntBitmap bitmap = new IntBitmap();
+            for (int v = 0; v < 40; v++) {
+                int value = random.nextInt(3) == 0 ? random.nextInt(300_000) : random.nextInt(20_000);
+                bitmap.add(value);
+                expected.add(value);
+            }
+            accumulator.addAll(bitmap);
+        }
+        IntBitmap dense = new IntBitmap();
+        for (int value = 0; value < 70_000; value += 3) {
+            dense.add(value);
+            expected.add(value);
+        }
+        accumulator.addAll(dense);
+
+        assertEquals(expected.size(), accumulator.cardinality());
+        assertEquals(new ArrayList<>(expected), toList(accumulator));
+        // The source is not shared with the accumulator
+        dense.remove(3);
+        assertTrue(accumulator.contains(3));
+    }
+
+    @Test
+    void testRemovingLastValueDropsContainer() {
+        IntBitmap bitmap = new IntBitmap();
+        bitmap.add(70_000);
+        bitmap.remove(70_000);
+
+        assertTrue(bitmap.isEmpty());
+        assertFalse(bitmap.contains(70_000));
+    }
+
+    private static List<Integer> toList(IntBitmap bitmap) {
+        List<Integer> values = new ArrayList<>();
+        bitmap.forEach(values::add);
+        return values;
+    }
+}
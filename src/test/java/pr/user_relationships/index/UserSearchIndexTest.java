@@ -0,0 +1,149 @@
+package pr.user_relationships.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pr.user_relationships.dto.UserSearchCriteria;
+import pr.user_relationships.entity.User;
+import pr.user_relationships.scoring.FriendsAndHobbiesScorer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserSearchIndexTest {
+
+    private static final FriendsAndHobbiesScorer SCORER = new FriendsAndHobbiesScorer();
+
+    private UserSearchIndex index;
+    private User alice;
+    private User bob;
+    private User charlie;
+
+    @BeforeEach
+    void setUp() {
+        alice = user("uuid-1", 25, "chess", "reading");
+        bob = user("uuid-2", 31, "chess", "hiking");
+        charlie = user("uuid-3", 22, "Chess");
+        // alice: 2 friends, shares chess with both -> score 3.0
+        alice.addFriend(bob);
+        alice.addFriend(charlie);
+        List.of(alice, bob, charlie).forEach(user -> user.setPopularityScore(SCORER.score(user)));
+
+        index = new UserSearchIndex();
+        index.rebuild(List.of(alice, bob, charlie));
+    }
+
+    @Test
+    void testHobbyAgeAndScoreFilters() {
+        assertEquals(ids("uuid-1", "uuid-2", "uuid-3"),
+                search(UserSearchCriteria.builder().hobby(List.of("chess")).build()));
+
+        assertEquals(ids("uuid-1", "uuid-3"),
+                search(UserSearchCriteria.builder().hobby(List.of("chess")).minAge(20).maxAge(30).build()));
+
+        assertEquals(ids("uuid-1"),
+                search(UserSearchCriteria.builder().hobby(List.of("chess")).minAge(20).maxAge(30).minScore(2.0).build()));
+
+        assertEquals(ids("uuid-1"),
+                search(UserSearchCriteria.builder().hobby(List.of("chess", "reading")).build()));
+
+        assertTrue(search(UserSearchCriteria.builder().hobby(List.of("golf")).build()).isEmpty());
+        assertTrue(search(UserSearchCriteria.builder().minAge(40).maxAge(30).build()).isEmpty());
+        assertEquals(3, search(new UserSearchCriteria()).size());
+    }
+
+    @Test
+    void testUpsertReplacesPreviousEntryAndRemoveFreesIt() {
+        User updatedBob = user("uuid-2", 45, "golf");
+        index.upsert(List.of(updatedBob));
+
+        assertEquals(ids("uuid-1", "uuid-3"), search(UserSearchCriteria.builder().hobby(List.of("chess")).build()));
+        assertEquals(ids("uuid-2"), search(UserSearchCriteria.builder().hobby(List.of("golf")).minAge(40).build()));
+
+        index.remove(List.of("uuid-1"));
+        assertEquals(ids("uuid-3"), search(UserSearchCriteria.builder().hobby(List.of("chess")).build()));
+
+        index.upsert(List.of(user("uuid-4", 25, "chess")));
+        assertEquals(ids("uuid-3", "uuid-4"), search(UserSearchCriteria.builder().hobby(List.of("chess")).build()));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testRefreshScoresOnlyMovesScoreBuckets() {
+        Map<String, Double> scores = Map.of("uuid-1", 0.5, "uuid-2", 7.0);
+        index.refreshScores(id -> scores.getOrDefault(id, 0.0));
+
+        assertEquals(ids("uuid-2"), search(UserSearchCriteria.builder().minScore(5.0).build()));
+        assertEquals(ids("uuid-1", "uuid-3"), search(UserSearchCriteria.builder().maxScore(1.0).build()));
+        // Hobby and age postings are untouched
+        assertEquals(ids("uuid-1", "uuid-3"),
+                search(UserSearchCriteria.builder().hobby(List.of("chess")).maxAge(30).build()));
+    }
+
+    @Test
+    void testScoreRangesMatchExactScoresAcrossBuckets() {
+        // Distinct scores, as graph scorers produce them, including values inside the edge buckets
+        Random random = new Random(13);
+        Map<String, Double> scores = new HashMap<>();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            User user = user("user-" + i, 30, "chess");
+            double score = i % 10 == 0 ? -random.nextDouble() : random.nextDouble() * 0.01;
+            user.setPopularityScore(score);
+            scores.put(user.getId(), score);
+            users.add(user);
+        }
+        index.rebuild(users);
+
+        for (int query = 0; query < 200; query++) {
+            double a = random.nextDouble() * 0.012 - 0.002;
+            double b = query % 4 == 0 ? a * (1 + 1e-4) : random.nextDouble() * 0.012 - 0.002;
+            double low = Math.min(a, b);
+            double high = Math.max(a, b);
+            Set<String> expected = scores.entrySet().stream()
+                    .filter(entry -> entry.getValue() >= low && entry.getValue() <= high)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+            assertEquals(expected, search(UserSearchCriteria.builder().minScore(low).maxScore(high).build()));
+        }
+        // Every tenth user has a negative score
+        assertEquals(500, search(UserSearchCriteria.builder().maxScore(-0.0).build()).size());
+    }
+
+    @Test
+    void testScoreBucketsFollowScoreOrder() {
+        double[] scores = {Double.NEGATIVE_INFINITY, -2.0, -1e-9, -0.0, 0.0, 1e-9, 0.001, 0.5, 3.0, Double.MAX_VALUE};
+        for (int i = 1; i < scores.length; i++) {
+            assertTrue(UserSearchIndex.scoreBucket(scores[i - 1]) <= UserSearchIndex.scoreBucket(scores[i]),
+                    scores[i - 1] + " vs " + scores[i]);
+        }
+        // Close scores share a bucket, so a range holds few buckets
+        assertEquals(UserSearchIndex.scoreBucket(0.5), UserSearchIndex.scoreBucket(0.5 + 1e-4));
+    }
+
+    private HashSet<String> search(UserSearchCriteria criteria) {
+        return new HashSet<>(index.search(criteria));
+    }
+
+    private static HashSet<String> ids(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    private static User user(String id, int age, String... hobbies) {
+        return User.builder()
+                .id(id)
+                .username("user-" + id)
+                .age(age)
+                .hobbies(Arrays.asList(hobbies))
+                .popularityScore(0.0)
+                .build();
+    }
+}
@@ -0,0 +1,152 @@
+package pr.user_relationships.index;
+
+import org.junit.jupiter.api.Test;
+import pr.user_relationships.dto.UserSuggestion;
+import pr.user_relationships.entity.User;
+import pr.user_relationships.scoring.FriendsAndHobbiesScorer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsernameSuggestIndexTest {
+
+    private final UsernameSuggestIndex index = new UsernameSuggestIndex();
+
+    @Test
+    void testRanksPrefixMatchesByScore() {
+        User alice = user("uuid-1", "alice");
+        User alina = user("uuid-2", "Alina");
+        User albert = user("uuid-3", "albert");
+        User bob = user("uuid-4", "bob");
+        // alina: 2 friends, albert: 1 friend
+        alina.addFriend(albert);
+        alina.addFriend(bob);
+        FriendsAndHobbiesScorer scorer = new FriendsAndHobbiesScorer();
+        List.of(alice, alina, albert, bob).forEach(user -> user.setPopularityScore(scorer.score(user)));
+        index.rebuild(List.of(alice, alina, albert, bob));
+
+        assertEquals(List.of("Alina", "albert", "alice"), usernames(index.suggest("AL", 10)));
+        assertEquals(List.of("Alina", "alice"), usernames(index.suggest("ali", 10)));
+        assertEquals(List.of("Alina"), usernames(index.suggest("al", 1)));
+        assertTrue(index.suggest("carl", 10).isEmpty());
+    }
+
+    @Test
+    void testUpsertAndRemoveKeepIndexSorted() {
+        index.rebuild(List.of(user("uuid-1", "alice"), user("uuid-2", "bob")));
+
+        index.upsert(List.of(user("uuid-1", "zoe"), user("uuid-3", "alex")));
+        assertEquals(List.of("alex"), usernames(index.suggest("a", 10)));
+        assertEquals(List.of("zoe"), usernames(index.suggest("z", 10)));
+
+        index.remove(List.of("uuid-2"));
+        assertEquals(List.of("alex", "zoe"), usernames(index.suggest("", 10)));
+    }
+
+    @Test
+    void testRefreshScoresReordersSuggestions() {
+        index.rebuild(List.of(user("uuid-1", "alice"), user("uuid-2", "alina")));
+        index.upsert(List.of(user("uuid-3", "albert")));
+
+        Map<String, Double> scores = Map.of("uuid-1", 1.0, "uuid-2", 3.0, "uuid-3", 2.0);
+        index.refreshScores(scores::get);
+
+        assertEquals(List.of("alina", "albert", "alice"), usernames(index.suggest("al", 10)));
+        assertEquals(3.0, index.suggest("al", 1).get(0).getPopularityScore());
+    }
+
+    @Test
+    void testMatchesBruteForceOnRandomData() {
+        Random random = new Random(17);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            User user = user(String.format("uuid-%04d", i), randomName(random));
+            user.setPopularityScore((double) random.nextInt(20));
+            users.add(user);
+        }
+        index.rebuild(users);
+
+        for (String prefix : List.of("", "a", "ab", "b", "ca", "ddd")) {
+            List<Double> expected = users.stream()
+                    .filter(user -> user.getUsername().toLowerCase(Locale.ROOT).startsWith(prefix))
+                    .map(User::getPopularityScore)
+                    .sorted(Comparator.reverseOrder())
+                    .limit(15)
+                    .collect(Collectors.toList());
+            List<Double> actual = index.suggest(prefix, 15).stream()
+                    .map(UserSuggestion::getPopularityScore)
+                    .collect(Collectors.toList());
+            assertEquals(expected, actual, "prefix '" + prefix + "'");
+        }
+    }
+
+    @Test
+    void testIncrementalChangesMatchBruteForce() {
+        Random random = new Random(23);
+        Map<String, User> users = new LinkedHashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            User user = user(String.format("uuid-%04d", i), randomName(random));
+            user.setPopularityScore((double) random.nextInt(20));
+            users.put(user.getId(), user);
+        }
+        index.rebuild(users.values());
+
+        // Enough single-user changes to fold the overlay into the sorted array several times
+        for (int step = 0; step < 400; step++) {
+            String id = String.format("uuid-%04d", random.nextInt(1_200));
+            if (random.nextInt(4) == 0) {
+                users.remove(id);
+                index.remove(List.of(id));
+            } else {
+                User user = user(id, randomName(random));
+                user.setPopularityScore((double) random.nextInt(20));
+                users.put(id, user);
+                index.upsert(List.of(user));
+            }
+
+            String prefix = randomName(random).substring(0, random.nextInt(3));
+            List<String> expected = users.values().stream()
+                    .filter(user -> user.getUsername().startsWith(prefix))
+                    .sorted(Comparator.comparing(User::getPopularityScore).reversed()
+                            .thenComparing(User::getUsername)
+                            .thenComparing(User::getId))
+                    .limit(10)
+                    .map(User::getId)
+                    .collect(Collectors.toList());
+            List<String> actual = index.suggest(prefix, 10).stream()
+                    .map(UserSuggestion::getId)
+                    .collect(Collectors.toList());
+            assertEquals(expected, actual, "step " + step + ", prefix '" + prefix + "'");
+        }
+    }
+
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 3 + random.nextInt(5); i++) {
+            name.append((char) ('a' + random.nextInt(4)));
+        }
+        return name.toString();
+    }
+
+    private static List<String> usernames(List<UserSuggestion> suggestions) {
+        return suggestions.stream().map(UserSuggestion::getUsername).collect(Collectors.toList());
+    }
+
+    private static User user(String id, String username) {
+        return User.builder()
+                .id(id)
+                .username(username)
+                .age(30)
+                .hobbies(Arrays.asList("reading"))
+                .build();
+    }
+}
@@ -0,0 +1,167 @@
+package pr.user_relationships.layout;
+
+import org.junit.jupiter.api.Test;
+import pr.user_relationships.dto.Relationship;
+import pr.user_relationships.dto.UserDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphLayoutServiceTest {
+
+    private final GraphLayoutService layoutService = new GraphLayoutService(0.8, 300, 40);
+
+    @Test
+    void testLinkedUsersEndUpCloserThanUnlinkedOnes() {
+        // Two dense clusters of 50 users joined by a single link
+        List<UserDTO> users = users(100);
+        List<Relationship> relationships = new ArrayList<>();
+        Random random = new Random(7);
+        for (int cluster = 0; cluster < 2; cluster++) {
+            for (int i = 0; i < 200; i++) {
+                int a = cluster * 50 + random.nextInt(50);
+                int b = cluster * 50 + random.nextInt(50);
+                if (a != b) {
+                    relationships.add(link(users, a, b));
+                }
+            }
+        }
+        relationships.add(link(users, 0, 50));
+
+        layoutService.applyLayout(users, relationships);
+
+        for (UserDTO user : users) {
+            assertTrue(Double.isFinite(user.getX()) && Double.isFinite(user.getY()));
+        }
+        double within = averageDistance(users, 0, 50, 0, 50);
+        double across = averageDistance(users, 0, 50, 50, 100);
+        assertTrue(within < across, "within=" + within + " across=" + across);
+    }
+
+    @Test
+    void testSmallChangeOnlyRefinesCachedLayout() {
+        List<UserDTO> users = users(500);
+        List<Relationship> relationships = new ArrayList<>();
+        for (int i = 1; i < 500; i++) {
+            relationships.add(link(users, i, (i - 1) / 3));
+        }
+        layoutService.applyLayout(users, relationships);
+        double[][] before = positions(users);
+
+        // Unchanged graph: served from the cache
+        layoutService.applyLayout(users, relationships);
+        assertArrayEquals(before[0], positions(users)[0]);
+
+        // One more link: nodes stay near where they were
+        relationships.add(link(users, 10, 400));
+        layoutService.applyLayout(users, relationships);
+        double[][] after = positions(users);
+        double moved = 0;
+        for (int i = 0; i < users.size(); i++) {
+            moved += Math.hypot(after[0][i] - before[0][i], after[1][i] - before[1][i]);
+        }
+        assertTrue(moved / users.size() < BarnesHutLayout.IDEAL_EDGE_LENGTH * 8,
+                "average movement " + moved / users.size());
+    }
+
+    @Test
+    void testSubgraphLayoutKeepsFullGraphPositions() {
+        List<UserDTO> users = users(200);
+        List<Relationship> relationships = new ArrayList<>();
+        for (int i = 1; i < 200; i++) {
+            relationships.add(link(users, i, (i - 1) / 2));
+        }
+        layoutService.applyLayout(users, relationships);
+        double[][] before = positions(users);
+
+        // A subgraph without its links is laid out quite differently
+        List<UserDTO> subgraph = users(50);
+        layoutService.applyLayout(subgraph, List.of(), true);
+
+        layoutService.applyLayout(users, relationships);
+        assertArrayEquals(before[0], positions(users)[0]);
+        assertArrayEquals(before[1], positions(users)[1]);
+    }
+
+    @Test
+    void testDeletedUsersAreEvicted() {
+        List<UserDTO> users = users(100);
+        List<Relationship> relationships = new ArrayList<>();
+        for (int i = 1; i < 100; i++) {
+            relationships.add(link(users, i, i - 1));
+        }
+        layoutService.applyLayout(users, relationships);
+        assertEquals(100, layoutService.cachedPositionCount());
+
+        layoutService.applyLayout(users.subList(0, 60), relationships.subList(0, 59));
+        assertEquals(60, layoutService.cachedPositionCount());
+    }
+
+    @Test
+    void testMostlyNewGraphGetsFullLayout() {
+        assertFalse(GraphLayoutService.refinable(0, 100));
+        assertFalse(GraphLayoutService.refinable(1, 100));
+        assertFalse(GraphLayoutService.refinable(49, 100));
+        assertTrue(GraphLayoutService.refinable(50, 100));
+        assertTrue(GraphLayoutService.refinable(99, 100));
+    }
+
+    @Test
+    void testLargeGraphLayoutCompletes() {
+        List<UserDTO> users = users(5_000);
+        List<Relationship> relationships = new ArrayList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 15_000; i++) {
+            int a = random.nextInt(users.size());
+            int b = random.nextInt(users.size());
+            if (a != b) {
+                relationships.add(link(users, a, b));
+            }
+        }
+
+        new GraphLayoutService(0.8, 50, 10).applyLayout(users, relationships);
+
+        users.forEach(user -> assertNotNull(user.getX()));
+    }
+
+    private static List<UserDTO> users(int count) {
+        List<UserDTO> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(UserDTO.builder().id(String.format("user-%05d", i)).username("user" + i).build());
+        }
+        return users;
+    }
+
+    private static Relationship link(List<UserDTO> users, int a, int b) {
+        String id1 = users.get(Math.min(a, b)).getId();
+        String id2 = users.get(Math.max(a, b)).getId();
+        return Relationship.builder().userId1(id1).userId2(id2).build();
+    }
+
+    private static double[][] positions(List<UserDTO> users) {
+        double[][] result = new double[2][users.size()];
+        for (int i = 0; i < users.size(); i++) {
+            result[0][i] = users.get(i).getX();
+            result[1][i] = users.get(i).getY();
+        }
+        return result;
+    }
+
+    private static double averageDistance(List<UserDTO> users, int fromA, int toA, int fromB, int toB) {
+        double total = 0;
+        int pairs = 0;
+        for (int i = fromA; i < toA; i++) {
+            for (int j = fromB; j < toB; j++) {
+                if (i != j) {
+                    total += Math.hypot(users.get(i).getX() - users.get(j).getX(),
+                            users.get(i).getY() - users.get(j).getY());
+                    pairs++;
+                }
+            }
+        }
+        return total / pairs;
+    }
+}
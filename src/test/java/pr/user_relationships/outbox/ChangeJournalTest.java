@@ -0,0 +1,125 @@
+package pr.user_relationships.outbox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pr.user_relationships.event.UserGraphChangedEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeJournalTest {
+
+    private static final String ALICE = "00000000-0000-0000-0000-000000000001";
+    private static final String BOB = "00000000-0000-0000-0000-000000000002";
+    private static final String CAROL = "00000000-0000-0000-0000-000000000003";
+
+    // A link record takes 54 bytes, so each segment holds two of them
+    private static final int SEGMENT_SIZE = 128;
+    private static final int LINK_RECORD = 54;
+
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testAppendsAndReadsAcrossSegments() throws Exception {
+        try (ChangeJournal journal = new ChangeJournal(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < 4; i++) {
+                // Offsets stay contiguous when a new segment is started
+                assertEquals((long) i * LINK_RECORD, journal.append(link(), NOW.plusSeconds(i)));
+            }
+            long deleted = journal.append(new UserGraphChangedEvent(UserGraphChangedEvent.Type.USER_DELETED,
+                    CAROL, null, List.of(ALICE, BOB)), NOW);
+
+            assertEquals(3, journal.segmentCount());
+            List<ChangeRecord> records = journal.read(0, 10);
+            assertEquals(5, records.size());
+            for (int i = 1; i < records.size(); i++) {
+                assertEquals(records.get(i - 1).getNextOffset(), records.get(i).getOffset());
+            }
+            assertEquals(journal.endOffset(), records.get(4).getNextOffset());
+
+            ChangeRecord link = records.get(1);
+            assertEquals(UserGraphChangedEvent.Type.USERS_LINKED, link.getType());
+            assertEquals(ALICE, link.getUserId());
+            assertEquals(BOB, link.getOtherUserId());
+            assertEquals(NOW.plusSeconds(1), link.getTimestamp());
+
+            ChangeRecord delete = records.get(4);
+            assertEquals(deleted, delete.getOffset());
+            assertNull(delete.getOtherUserId());
+            assertEquals(List.of(ALICE, BOB), delete.getAffectedUserIds());
+
+            assertEquals(records.subList(2, 4), journal.read(records.get(2).getOffset(), 2));
+            assertTrue(journal.read(journal.endOffset(), 10).isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> journal.read(1, 10));
+        }
+    }
+
+    @Test
+    void testReopenKeepsRecordsAndCutsTornTail() throws Exception {
+        long end;
+        try (ChangeJournal journal = new ChangeJournal(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(link(), NOW);
+            }
+            end = journal.endOffset();
+        }
+
+        // A record header whose body never made it to disk
+        Path lastSegment = directory.resolve(String.format("%020d.journal", 2 * LINK_RECORD));
+        try (FileChannel channel = FileChannel.open(lastSegment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putInt(46).putInt(12345).flip(), LINK_RECORD);
+        }
+
+        try (ChangeJournal journal = new ChangeJournal(directory, SEGMENT_SIZE)) {
+            assertEquals(end, journal.endOffset());
+            assertEquals(3, journal.read(0, 10).size());
+
+            long offset = journal.append(link(), NOW);
+            assertEquals(end, offset);
+            assertEquals(4, journal.read(0, 10).size());
+        }
+    }
+
+    @Test
+    void testDirectoryCanOnlyBeOpenedOnce() throws Exception {
+        try (ChangeJournal journal = new ChangeJournal(directory, SEGMENT_SIZE)) {
+            assertThrows(IllegalStateException.class, () -> new ChangeJournal(directory, SEGMENT_SIZE));
+        }
+    }
+
+    @Test
+    void testDeletesOnlyPublishedSealedSegments() throws Exception {
+        try (ChangeJournal journal = new ChangeJournal(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(link(), NOW);
+            }
+            Instant later = Instant.now().plus(Duration.ofHours(1));
+
+            // Sealed just now, so not yet past retention
+            assertEquals(0, journal.deleteSegments(Long.MAX_VALUE, Instant.now().minus(Duration.ofHours(1))));
+            // The second segment still holds unpublished records
+            assertEquals(1, journal.deleteSegments(3 * LINK_RECORD, later));
+            assertEquals(2 * LINK_RECORD, journal.startOffset());
+            assertEquals(2 * LINK_RECORD, journal.read(0, 1).get(0).getOffset());
+
+            // The active segment is always kept
+            assertEquals(1, journal.deleteSegments(Long.MAX_VALUE, later));
+            assertEquals(1, journal.segmentCount());
+            assertEquals(1, journal.read(0, 10).size());
+        }
+    }
+
+    private static UserGraphChangedEvent link() {
+        return new UserGraphChangedEvent(UserGraphChangedEvent.Type.USERS_LINKED, ALICE, BOB, List.of());
+    }
+}
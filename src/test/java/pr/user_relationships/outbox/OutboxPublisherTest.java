@@ -0,0 +1,117 @@
+package pr.user_relationships.outbox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pr.user_relationships.event.ChangeJournalBatchEvent;
+import pr.user_relationships.event.UserGraphChangedEvent;
+import pr.user_relationships.exception.BadRequestException;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxPublisherTest {
+
+    private static final String ALICE = "00000000-0000-0000-0000-000000000001";
+    private static final String BOB = "00000000-0000-0000-0000-000000000002";
+    private static final String CAROL = "00000000-0000-0000-0000-000000000003";
+    private static final String DAVE = "00000000-0000-0000-0000-000000000004";
+
+    @TempDir
+    Path directory;
+
+    private final List<ChangeJournalBatchEvent> batches = new ArrayList<>();
+    private boolean consumerFailing;
+
+    @Test
+    void testRestartResumesFromStoredOffset() throws Exception {
+        Outbox outbox = new Outbox(properties());
+        OutboxPublisher publisher = publisher(outbox);
+        outbox.onUserGraphChanged(link(ALICE, BOB));
+        outbox.onUserGraphChanged(link(BOB, CAROL));
+        publisher.publish();
+        assertEquals(List.of(ALICE, BOB), published());
+        outbox.close();
+
+        batches.clear();
+        outbox = new Outbox(properties());
+        publisher = publisher(outbox);
+        publisher.publish();
+        assertTrue(batches.isEmpty());
+
+        outbox.onUserGraphChanged(link(CAROL, DAVE));
+        publisher.publish();
+        assertEquals(List.of(CAROL), published());
+        assertEquals(publisher.status().getEndOffset(), batches.get(0).getNextOffset());
+        outbox.close();
+    }
+
+    @Test
+    void testReplayFromStoredOffsetSurvivesRestart() throws Exception {
+        Outbox outbox = new Outbox(properties());
+        OutboxPublisher publisher = publisher(outbox);
+        outbox.onUserGraphChanged(link(ALICE, BOB));
+        outbox.onUserGraphChanged(link(BOB, CAROL));
+        outbox.onUserGraphChanged(link(CAROL, DAVE));
+        publisher.publish();
+
+        long second = outbox.read(0, 10).get(1).getOffset();
+        assertThrows(BadRequestException.class, () -> publisher.replayFrom(second + 1));
+        publisher.replayFrom(second);
+        outbox.close();
+
+        // The publisher comes back at the replay offset and delivers everything from there
+        batches.clear();
+        outbox = new Outbox(properties());
+        OutboxPublisher restarted = publisher(outbox);
+        assertEquals(second, restarted.status().getPublishedOffset());
+        restarted.publish();
+        assertEquals(List.of(BOB, CAROL), published());
+        outbox.close();
+    }
+
+    @Test
+    void testFailedBatchIsRetried() throws Exception {
+        Outbox outbox = new Outbox(properties());
+        OutboxPublisher publisher = publisher(outbox);
+        outbox.onUserGraphChanged(link(ALICE, BOB));
+
+        consumerFailing = true;
+        publisher.publish();
+        assertEquals(0, publisher.status().getPublishedOffset());
+
+        consumerFailing = false;
+        publisher.publish();
+        assertEquals(List.of(ALICE), published());
+        outbox.close();
+    }
+
+    private OutboxPublisher publisher(Outbox outbox) {
+        return new OutboxPublisher(outbox, properties(), event -> {
+            if (consumerFailing) {
+                throw new IllegalStateException("Consumer unavailable");
+            }
+            batches.add((ChangeJournalBatchEvent) event);
+        });
+    }
+
+    private OutboxProperties properties() {
+        OutboxProperties properties = new OutboxProperties();
+        properties.setDirectory(directory);
+        properties.setSegmentSize(4096);
+        return properties;
+    }
+
+    private List<String> published() {
+        return batches.stream()
+                .flatMap(batch -> batch.getRecords().stream())
+                .map(ChangeRecord::getUserId)
+                .toList();
+    }
+
+    private static UserGraphChangedEvent link(String userId, String otherUserId) {
+        return new UserGraphChangedEvent(UserGraphChangedEvent.Type.USERS_LINKED, userId, otherUserId, List.of());
+    }
+}
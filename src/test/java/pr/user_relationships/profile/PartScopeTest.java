@@ -0,0 +1,95 @@
+package pr.user_relationships.profile;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import pr.user_relationships.exception.ResourceNotFoundException;
+import pr.user_relationships.exception.ServiceUnavailableException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartScopeTest {
+
+    private static final Duration DEADLINE = Duration.ofMillis(200);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testLatePartIsLeftOutAndCancelled() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long started = System.nanoTime();
+
+        try (PartScope scope = new PartScope(executor)) {
+            PartScope.Part<String> fast = scope.fork("fast", DEADLINE, () -> "done");
+            PartScope.Part<String> slow = scope.fork("slow", DEADLINE, () -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return "late";
+            });
+
+            assertEquals("done", fast.join());
+            assertNull(slow.joinOrNull());
+            assertEquals(List.of("slow"), scope.incompleteParts());
+        }
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    void testDeadlinesRunFromScopeStartNotFromJoin() {
+        try (PartScope scope = new PartScope(executor)) {
+            PartScope.Part<String> first = scope.fork("first", DEADLINE, () -> sleepThen(150, "a"));
+            PartScope.Part<String> second = scope.fork("second", DEADLINE, () -> sleepThen(150, "b"));
+
+            // Both parts run side by side, so waiting on the first leaves time for the second
+            assertEquals("a", first.joinOrNull());
+            assertEquals("b", second.joinOrNull());
+            assertTrue(scope.incompleteParts().isEmpty());
+        }
+    }
+
+    @Test
+    void testFailedOptionalPartIsReported() {
+        try (PartScope scope = new PartScope(executor)) {
+            PartScope.Part<String> broken = scope.fork("broken", DEADLINE, () -> {
+                throw new IllegalStateException("boom");
+            });
+
+            assertNull(broken.joinOrNull());
+            assertEquals(List.of("broken"), scope.incompleteParts());
+        }
+    }
+
+    @Test
+    void testRequiredPartRethrowsFailureAndTimeout() {
+        try (PartScope scope = new PartScope(executor)) {
+            PartScope.Part<String> missing = scope.fork("user", DEADLINE, () -> {
+                throw new ResourceNotFoundException("User not found");
+            });
+            PartScope.Part<String> slow = scope.fork("slow", DEADLINE, () -> sleepThen(10_000, "late"));
+
+            assertThrows(ResourceNotFoundException.class, missing::join);
+            assertThrows(ServiceUnavailableException.class, slow::join);
+        }
+    }
+
+    private static String sleepThen(long millis, String value) throws InterruptedException {
+        Thread.sleep(millis);
+        return value;
+    }
+}
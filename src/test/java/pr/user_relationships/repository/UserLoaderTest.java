@@ -0,0 +1,113 @@
+package pr.user_relationships.repository;
+
+import org.junit.jupiter.api.Test;
+import pr.user_relationships.entity.User;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class UserLoaderTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserLoader userLoader = new UserLoader(userRepository);
+
+    @Test
+    void testUsersAreAssembledFromRows() {
+        // alice - bob are both requested, bob - carol reaches outside the request
+        stubRows(List.of("alice", "bob", "carol"),
+                List.of(new Object[]{"alice", "bob"}, new Object[]{"bob", "carol"}),
+                List.of(new Object[]{"alice", "chess"}, new Object[]{"bob", "chess"},
+                        new Object[]{"bob", "go"}, new Object[]{"carol", "go"}));
+
+        Map<String, User> users = byId(userLoader.findAllById(List.of("alice", "bob", "missing")));
+
+        assertEquals(Set.of("alice", "bob"), users.keySet());
+        User bob = users.get("bob");
+        assertEquals("user-bob", bob.getUsername());
+        assertEquals(30, bob.getAge());
+        assertEquals(CREATED, bob.getCreatedAt());
+        assertEquals(List.of("chess", "go"), bob.getHobbies());
+        assertEquals(Set.of("alice", "carol"), ids(bob.getFriends()));
+        assertSame(users.get("alice"), friend(bob, "alice"));
+
+        // Friends outside the request are stubs, without hobbies unless asked for
+        User carol = friend(bob, "carol");
+        assertNull(carol.getUsername());
+        assertEquals(List.of(), carol.getHobbies());
+
+        User scoredBob = byId(userLoader.findAllWithFriendHobbiesById(List.of("alice", "bob"))).get("bob");
+        assertEquals(List.of("go"), friend(scoredBob, "carol").getHobbies());
+    }
+
+    @Test
+    void testQueriesAreChunkedByRequestSize() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < UserLoader.CHUNK_SIZE * 2 + 1; i++) {
+            ids.add("user-" + i);
+        }
+        stubRows(ids, List.of(), List.of());
+
+        assertEquals(ids.size(), userLoader.findAllById(ids).size());
+
+        verify(userRepository, times(3)).findUserRows(anyCollection());
+        verify(userRepository, times(3)).findFriendshipRows(anyCollection());
+        verify(userRepository, times(3)).findHobbyRows(anyCollection());
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    void testNothingFoundStopsAfterUserRows() {
+        stubRows(List.of(), List.of(), List.of());
+
+        assertEquals(List.of(), userLoader.findAllById(List.of("missing")));
+
+        verify(userRepository).findUserRows(anyCollection());
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    private void stubRows(List<String> existing, List<Object[]> friendships, List<Object[]> hobbies) {
+        when(userRepository.findUserRows(anyCollection())).thenAnswer(invocation -> rows(invocation.getArgument(0),
+                existing.stream().map(id -> new Object[]{id, "user-" + id, 30, Timestamp.valueOf(CREATED)})
+                        .collect(Collectors.toList()), row -> row[0]));
+        when(userRepository.findFriendshipRows(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            return friendships.stream()
+                    .filter(row -> ids.contains(row[0]) || ids.contains(row[1]))
+                    .collect(Collectors.toList());
+        });
+        when(userRepository.findHobbyRows(anyCollection())).thenAnswer(invocation ->
+                rows(invocation.getArgument(0), hobbies, row -> row[0]));
+    }
+
+    private static List<Object[]> rows(Collection<String> ids, List<Object[]> rows, Function<Object[], Object> key) {
+        return rows.stream().filter(row -> ids.contains(key.apply(row))).collect(Collectors.toList());
+    }
+
+    private static Map<String, User> byId(List<User> users) {
+        return users.stream().collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
+    private static Set<String> ids(Collection<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toSet());
+    }
+
+    private static User friend(User user, String friendId) {
+        return user.getFriends().stream()
+                .filter(friend -> friend.getId().equals(friendId))
+                .findFirst()
+                .orElseThrow();
+    }
+}
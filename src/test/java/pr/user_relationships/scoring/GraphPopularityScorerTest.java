@@ -0,0 +1,92 @@
+package pr.user_relationships.scoring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphPopularityScorerTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final PopularityProperties properties = new PopularityProperties();
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void testPageRankFavoursHubAndAveragesToOne() {
+        // Star around u0, plus a separate pair and an isolated user
+        FriendGraph graph = graph(6, "0-1", "0-2", "0-3", "4-5");
+
+        double[] scores = new PageRankScorer(properties).score(graph, pool);
+
+        assertEquals(6.0, Arrays.stream(scores).sum(), 1e-6);
+        assertTrue(scores[0] > scores[1]);
+        assertEquals(scores[1], scores[3], 1e-9);
+        assertEquals(scores[4], scores[5], 1e-9);
+    }
+
+    @Test
+    void testPageRankOnCycleIsUniform() {
+        FriendGraph graph = graph(4, "0-1", "1-2", "2-3", "3-0");
+
+        double[] scores = new PageRankScorer(properties).score(graph, pool);
+
+        for (double score : scores) {
+            assertEquals(1.0, score, 1e-6);
+        }
+    }
+
+    @Test
+    void testEigenvectorCentralityOfStar() {
+        FriendGraph graph = graph(4, "0-1", "0-2", "0-3");
+
+        double[] scores = new EigenvectorCentralityScorer(properties).score(graph, pool);
+
+        // Leading eigenvector of a star with k leaves is (sqrt(k), 1, ..., 1)
+        assertEquals(Math.sqrt(3), scores[0] / scores[1], 1e-4);
+        assertEquals(4.0, Arrays.stream(scores).sum(), 1e-6);
+    }
+
+    @Test
+    void testParallelPageRankMatchesSequentialOnLargeGraph() {
+        int n = 20_000;
+        Random random = new Random(5);
+        List<String> edges = new ArrayList<>();
+        for (int i = 0; i < n * 4; i++) {
+            edges.add(random.nextInt(n) + "-" + random.nextInt(n));
+        }
+        FriendGraph graph = graph(n, edges.toArray(new String[0]));
+
+        double[] parallel = new PageRankScorer(properties).score(graph, pool);
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            double[] sequential = new PageRankScorer(properties).score(graph, single);
+            for (int v = 0; v < n; v++) {
+                assertEquals(sequential[v], parallel[v], 1e-6);
+            }
+        } finally {
+            single.shutdown();
+        }
+        assertEquals(n, Arrays.stream(parallel).sum(), 1e-3);
+    }
+
+    private static FriendGraph graph(int n, String... edges) {
+        List<String> ids = IntStream.range(0, n).mapToObj(i -> "u" + i).collect(Collectors.toList());
+        List<Object[]> pairs = Arrays.stream(edges)
+                .map(edge -> edge.split("-"))
+                .map(ends -> new Object[]{"u" + ends[0], "u" + ends[1]})
+                .collect(Collectors.toList());
+        return FriendGraph.build(ids, pairs);
+    }
+}
@@ -0,0 +1,124 @@
+package pr.user_relationships.scoring;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import pr.user_relationships.config.ReadWriteRoutingDataSource;
+import pr.user_relationships.entity.User;
+import pr.user_relationships.event.PopularityScoresRecomputedEvent;
+import pr.user_relationships.event.UserGraphChangedEvent;
+import pr.user_relationships.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PopularityScoresTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    @Test
+    void testGraphWideScoresAreServedFromLastRun() {
+        PopularityScores scores = scores("pagerank");
+        when(userRepository.findAllIds()).thenReturn(List.of("a", "b", "c"));
+        when(userRepository.findAllFriendships()).thenReturn(edges("a", "b", "a", "c"));
+
+        scores.refresh();
+
+        assertTrue(scores.scoreOf(user("a")) > scores.scoreOf(user("b")));
+        assertEquals(0.0, scores.scoreOf(user("created-later")));
+        verify(eventPublisher).publishEvent(any(PopularityScoresRecomputedEvent.class));
+
+        // Nothing changed, so the next scheduled run is skipped
+        scores.refresh();
+        verify(userRepository, times(1)).findAllIds();
+
+        scores.onUserGraphChanged(new UserGraphChangedEvent(
+                UserGraphChangedEvent.Type.USER_CREATED, "created-later", null, List.of()));
+        scores.refresh();
+        verify(userRepository, times(2)).findAllIds();
+    }
+
+    @Test
+    void testDefaultScorerIsEvaluatedPerUser() {
+        PopularityScores scores = scores("default");
+        User alice = User.builder().id("a").hobbies(List.of("chess")).build();
+        User bob = User.builder().id("b").hobbies(List.of("chess")).build();
+        alice.addFriend(bob);
+
+        scores.refresh();
+
+        assertEquals(1.5, scores.scoreOf(alice));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testGraphIsReadOnPrimary() {
+        PopularityScores scores = scores("pagerank");
+        when(userRepository.findAllIds()).thenAnswer(invocation -> {
+            assertTrue(ReadWriteRoutingDataSource.isPrimaryForced());
+            return List.of("a");
+        });
+
+        scores.recompute();
+
+        verify(userRepository).findAllIds();
+        assertFalse(ReadWriteRoutingDataSource.isPrimaryForced());
+    }
+
+    @Test
+    void testDefaultScoresAreServedFromLastAssignment() {
+        PopularityScores scores = scores("default");
+        User alice = User.builder().id("a").hobbies(List.of("chess")).build();
+        User bob = User.builder().id("b").hobbies(List.of("chess")).build();
+        alice.addFriend(bob);
+        scores.assignAll(List.of(alice, bob));
+
+        alice.setHobbies(new ArrayList<>(List.of("go")));
+
+        // Until the change is applied, reads see the stored score and the mutation the new one
+        assertEquals(1.5, scores.scoreOf(alice));
+        assertEquals(1.5, scores.scoreOf("a"));
+        assertEquals(1.0, scores.currentScoreOf(alice));
+
+        scores.assign(List.of(alice));
+        assertEquals(1.0, scores.scoreOf(alice));
+
+        scores.forget(List.of("a"));
+        assertEquals(0.0, scores.scoreOf("a"));
+        assertEquals(1.5, scores.scoreOf("b"));
+
+        scores.assignAll(List.of(bob));
+        assertEquals(0.0, scores.scoreOf("a"));
+    }
+
+    @Test
+    void testUnknownScorerFailsFast() {
+        assertThrows(IllegalStateException.class, () -> scores("closeness"));
+    }
+
+    private PopularityScores scores(String scorer) {
+        PopularityProperties properties = new PopularityProperties();
+        properties.setScorer(scorer);
+        List<PopularityScorer> scorers = List.of(new FriendsAndHobbiesScorer(),
+                new PageRankScorer(properties), new EigenvectorCentralityScorer(properties));
+        return new PopularityScores(properties, scorers, userRepository, eventPublisher,
+                mock(PlatformTransactionManager.class));
+    }
+
+    private static User user(String id) {
+        return User.builder().id(id).build();
+    }
+
+    private static List<Object[]> edges(String... ends) {
+        List<Object[]> edges = new ArrayList<>();
+        for (int i = 0; i < ends.length; i += 2) {
+            edges.add(new Object[]{ends[i], ends[i + 1]});
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,206 @@
+package pr.user_relationships.service;
+
+import org.apache.coyote.BadRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import pr.user_relationships.entity.User;
+import pr.user_relationships.exception.ConflictException;
+import pr.user_relationships.index.UserSearchIndex;
+import pr.user_relationships.index.UsernameSuggestIndex;
+import pr.user_relationships.layout.GraphLayoutService;
+import pr.user_relationships.repository.UserLoader;
+import pr.user_relationships.repository.UserRepository;
+import pr.user_relationships.scoring.PopularityScores;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Stress test for the link/unlink path. The repository is backed by an in-memory
+ * edge set whose check-then-write is deliberately not atomic, so any pair of
+ * concurrent mutations that is not serialized by the striped locks shows up as a
+ * primary key collision or a lost edge.
+ */
+class FriendshipConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int USERS = 200;
+
+    private final Set<String> rows = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger keyCollisions = new AtomicInteger();
+
+    private UserService userService;
+    private String hub;
+    private List<String> userIds;
+
+    @BeforeEach
+    void setUp() {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.existsById(anyString())).thenReturn(true);
+        when(userRepository.findById(anyString())).thenAnswer(i -> Optional.of(User.builder()
+                .id(i.getArgument(0))
+                .username(i.getArgument(0))
+                .age(30)
+                .hobbies(new ArrayList<>())
+                .build()));
+        when(userRepository.insertFriendship(anyString(), anyString()))
+                .thenAnswer(i -> insertRow(i.getArgument(0), i.getArgument(1)));
+        when(userRepository.deleteFriendship(anyString(), anyString()))
+                .thenAnswer(i -> deleteRow(i.getArgument(0), i.getArgument(1)));
+
+        userService = new UserService(userRepository, mock(UserLoader.class), new FriendshipLocks(64), mock(GraphLayoutService.class),
+                mock(UserSearchIndex.class), mock(UsernameSuggestIndex.class), mock(PopularityScores.class),
+                mock(ApplicationEventPublisher.class), mock(PlatformTransactionManager.class));
+
+        hub = UUID.randomUUID().toString();
+        userIds = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            userIds.add(UUID.randomUUID().toString());
+        }
+    }
+
+    @Test
+    void testConcurrentLinksToPopularUserLoseNoEdges() throws Exception {
+        Map<String, AtomicInteger> successes = new ConcurrentHashMap<>();
+        AtomicInteger conflicts = new AtomicInteger();
+
+        long ops = runOnAllThreads(seed -> {
+            List<String> order = new ArrayList<>(userIds);
+            Collections.shuffle(order, new Random(seed));
+            for (String friendId : order) {
+                try {
+                    userService.linkUsers(friendId, hub);
+                    successes.computeIfAbsent(friendId, k -> new AtomicInteger()).incrementAndGet();
+                } catch (ConflictException e) {
+                    conflicts.incrementAndGet();
+                }
+            }
+            return order.size();
+        });
+
+        assertEquals((long) THREADS * USERS, ops);
+        assertEquals(USERS, successes.size());
+        successes.values().forEach(count -> assertEquals(1, count.get()));
+        assertEquals((THREADS - 1) * USERS, conflicts.get());
+        for (String friendId : userIds) {
+            assertTrue(rows.contains(row(hub, friendId)));
+        }
+        assertEquals(USERS, rows.size());
+        assertEquals(0, keyCollisions.get());
+    }
+
+    @Test
+    void testConcurrentLinkUnlinkChurnKeepsEdgesConsistent() throws Exception {
+        List<String> pool = userIds.subList(0, 16);
+        Map<String, AtomicInteger> balance = new ConcurrentHashMap<>();
+
+        runOnAllThreads(seed -> {
+            Random random = new Random(seed);
+            int ops = 0;
+            for (int i = 0; i < 5_000; i++) {
+                String a = pool.get(random.nextInt(pool.size()));
+                String b = pool.get(random.nextInt(pool.size()));
+                if (a.equals(b)) {
+                    continue;
+                }
+                String pair = a.compareTo(b) < 0 ? a + "|" + b : b + "|" + a;
+                try {
+                    if (random.nextBoolean()) {
+                        userService.linkUsers(a, b);
+                        balance.computeIfAbsent(pair, k -> new AtomicInteger()).incrementAndGet();
+                    } else {
+                        userService.unlinkUsers(a, b);
+                        balance.computeIfAbsent(pair, k -> new AtomicInteger()).decrementAndGet();
+                    }
+                } catch (ConflictException | BadRequestException e) {
+                    // Already linked / not linked: expected under churn
+                }
+                ops++;
+            }
+            return ops;
+        });
+
+        for (Map.Entry<String, AtomicInteger> entry : balance.entrySet()) {
+            String[] ids = entry.getKey().split("\\|");
+            int expected = entry.getValue().get();
+            assertTrue(expected == 0 || expected == 1, "Pair linked more than once: " + entry.getKey());
+            assertEquals(expected == 1, rows.contains(row(ids[0], ids[1])));
+        }
+        assertEquals(0, keyCollisions.get());
+    }
+
+    private long runOnAllThreads(Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                return worker.run(seed);
+            }));
+        }
+
+        start.countDown();
+        long ops = 0;
+        for (Future<Integer> result : results) {
+            ops += result.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        return ops;
+    }
+
+    private int insertRow(String userId, String friendId) {
+        String row = row(userId, friendId);
+        if (rows.contains(row)) {
+            return 0;
+        }
+        Thread.yield();
+        if (!rows.add(row)) {
+            keyCollisions.incrementAndGet();
+            return 0;
+        }
+        return 1;
+    }
+
+    private int deleteRow(String userId, String friendId) {
+        String row = row(userId, friendId);
+        if (!rows.contains(row)) {
+            return 0;
+        }
+        Thread.yield();
+        return rows.remove(row) ? 1 : 0;
+    }
+
+    // Canonical single-row key, as stored in user_friends (user_id1 < user_id2)
+    private static String row(String userId, String friendId) {
+        return userId.compareTo(friendId) < 0
+                ? userId + "|" + friendId
+                : friendId + "|" + userId;
+    }
+
+    @FunctionalInterface
+    private interface Worker {
+        int run(long seed) throws Exception;
+    }
+}
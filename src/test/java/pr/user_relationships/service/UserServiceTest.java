@@ -4,23 +4,42 @@ import org.apache.coyote.BadRequestException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import pr.user_relationships.dto.BatchGetResponse;
 import pr.user_relationships.dto.CreateUserRequest;
 import pr.user_relationships.dto.GraphResponse;
 import pr.user_relationships.dto.Relationship;
+import pr.user_relationships.dto.UpdateUserRequest;
 import pr.user_relationships.dto.UserDTO;
+import pr.user_relationships.dto.UserSearchCriteria;
 import pr.user_relationships.entity.User;
 import pr.user_relationships.exception.ConflictException;
+import pr.user_relationships.exception.ResourceNotFoundException;
+import pr.user_relationships.layout.GraphLayoutService;
+import pr.user_relationships.repository.UserLoader;
 import pr.user_relationships.repository.UserRepository;
+import pr.user_relationships.scoring.FriendsAndHobbiesScorer;
+import pr.user_relationships.scoring.PopularityProperties;
+import pr.user_relationships.scoring.PopularityScores;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,9 +48,32 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserLoader userLoader;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private GraphLayoutService graphLayoutService;
+
+    @Spy
+    private FriendshipLocks friendshipLocks = new FriendshipLocks();
+
+    @Spy
+    private PopularityScores popularityScores = new PopularityScores(new PopularityProperties(),
+            List.of(new FriendsAndHobbiesScorer()), null, null, null);
+
     @InjectMocks
     private UserService userService;
 
+    private static final String ID1 = "00000000-0000-0000-0000-000000000001";
+    private static final String ID2 = "00000000-0000-0000-0000-000000000002";
+    private static final String ID3 = "00000000-0000-0000-0000-000000000003";
+
     private User user1;
     private User user2;
     private User user3;
@@ -39,27 +81,24 @@ class UserServiceTest {
     @BeforeEach
     void setUp() {
         user1 = User.builder()
-                .id("uuid-1")
+                .id(ID1)
                 .username("alice")
                 .age(25)
                 .hobbies(Arrays.asList("reading", "gaming", "cooking"))
-                .friends(new HashSet<>())
                 .build();
 
         user2 = User.builder()
-                .id("uuid-2")
+                .id(ID2)
                 .username("bob")
                 .age(30)
                 .hobbies(Arrays.asList("gaming", "hiking", "cooking"))
-                .friends(new HashSet<>())
                 .build();
 
         user3 = User.builder()
-                .id("uuid-3")
+                .id(ID3)
                 .username("charlie")
                 .age(28)
                 .hobbies(Arrays.asList("reading", "music"))
-                .friends(new HashSet<>())
                 .build();
     }
 
@@ -69,10 +108,10 @@ class UserServiceTest {
         user1.addFriend(user2);
         user1.addFriend(user3);
 
-        when(userRepository.findById("uuid-1")).thenReturn(Optional.of(user1));
+        when(userRepository.findById(ID1)).thenReturn(Optional.of(user1));
 
         // Execute
-        UserDTO result = userService.getUserById("uuid-1");
+        UserDTO result = userService.getUserById(ID1);
 
         // Verify
         // user1 has 2 friends
@@ -86,29 +125,45 @@ class UserServiceTest {
     void testDeleteUserWithFriendsThrowsConflict() {
         // Setup: user1 has friends
         user1.addFriend(user2);
-        when(userRepository.findById("uuid-1")).thenReturn(Optional.of(user1));
+        when(userRepository.findById(ID1)).thenReturn(Optional.of(user1));
 
         // Execute & Verify
         ConflictException exception = assertThrows(
                 ConflictException.class,
-                () -> userService.deleteUser("uuid-1")
+                () -> userService.deleteUser(ID1)
         );
 
         assertTrue(exception.getMessage().contains("existing friendships"));
         verify(userRepository, never()).delete(any());
     }
 
+    @Test
+    void testCascadeDeleteRemovesFriendshipsWithoutLoadingGraph() {
+        // Setup
+        when(userRepository.existsById(ID1)).thenReturn(true);
+        when(userRepository.deleteAllFriendships(ID1)).thenReturn(2);
+
+        // Execute
+        userService.deleteUser(ID1, true);
+
+        // Verify: edges, hobbies and the user row go in one statement each
+        verify(userRepository).deleteAllFriendships(ID1);
+        verify(userRepository).deleteHobbies(ID1);
+        verify(userRepository).deleteUserRow(ID1);
+        verify(userRepository, never()).findById(any());
+        verify(userRepository, never()).delete(any());
+    }
+
     @Test
     void testCircularFriendshipPrevention() {
-        // Setup: user1 and user2 already friends
-        user1.addFriend(user2);
-        when(userRepository.findById("uuid-1")).thenReturn(Optional.of(user1));
-        when(userRepository.findById("uuid-2")).thenReturn(Optional.of(user2));
+        // Setup: user1 and user2 already friends, so the edge insert is a no-op
+        when(userRepository.existsById(anyString())).thenReturn(true);
+        when(userRepository.insertFriendship(ID1, ID2)).thenReturn(0);
 
         // Execute & Verify: trying to link again should throw conflict
         ConflictException exception = assertThrows(
                 ConflictException.class,
-                () -> userService.linkUsers("uuid-1", "uuid-2")
+                () -> userService.linkUsers(ID1, ID2)
         );
 
         assertTrue(exception.getMessage().contains("already friends"));
@@ -116,36 +171,57 @@ class UserServiceTest {
 
     @Test
     void testMutualFriendshipBidirectional() throws BadRequestException {
-        // Setup
-        when(userRepository.findById("uuid-1")).thenReturn(Optional.of(user1));
-        when(userRepository.findById("uuid-2")).thenReturn(Optional.of(user2));
-        when(userRepository.save(any(User.class))).thenAnswer(i -> i.getArguments()[0]);
+        // Setup: the edge insert is what makes the users friends
+        when(userRepository.existsById(anyString())).thenReturn(true);
+        when(userRepository.insertFriendship(ID2, ID1)).thenAnswer(i -> {
+            user1.addFriend(user2);
+            return 1;
+        });
+        when(userRepository.findById(ID2)).thenReturn(Optional.of(user2));
 
-        // Execute: link user1 -> user2
-        userService.linkUsers("uuid-1", "uuid-2");
+        // Execute: link user2 -> user1
+        UserDTO result = userService.linkUsers(ID2, ID1);
 
         // Verify: both users should have each other as friends
         assertTrue(user1.getFriends().contains(user2));
         assertTrue(user2.getFriends().contains(user1));
-        verify(userRepository, times(2)).save(any(User.class));
+        assertEquals(List.of(ID1), result.getFriends());
+        verify(userRepository, times(1)).insertFriendship(ID2, ID1);
+        verify(userRepository, never()).save(any(User.class));
     }
 
     @Test
     void testUnlinkRemovesBothDirections() throws BadRequestException {
         // Setup: users are friends
         user1.addFriend(user2);
-        when(userRepository.findById("uuid-1")).thenReturn(Optional.of(user1));
-        when(userRepository.findById("uuid-2")).thenReturn(Optional.of(user2));
-        when(userRepository.save(any(User.class))).thenAnswer(i -> i.getArguments()[0]);
+        when(userRepository.existsById(anyString())).thenReturn(true);
+        when(userRepository.deleteFriendship(ID1, ID2)).thenAnswer(i -> {
+            user1.removeFriend(user2);
+            return 1;
+        });
+        when(userRepository.findById(ID1)).thenReturn(Optional.of(user1));
 
         // Execute
-        userService.unlinkUsers("uuid-1", "uuid-2");
+        userService.unlinkUsers(ID1, ID2);
 
         // Verify: both users should no longer be friends
         assertFalse(user1.getFriends().contains(user2));
         assertFalse(user2.getFriends().contains(user1));
     }
 
+    @Test
+    void testUnlinkNonFriendsThrowsBadRequest() {
+        when(userRepository.existsById(anyString())).thenReturn(true);
+        when(userRepository.deleteFriendship(ID3, ID1)).thenReturn(0);
+
+        BadRequestException exception = assertThrows(
+                BadRequestException.class,
+                () -> userService.unlinkUsers(ID3, ID1)
+        );
+
+        assertTrue(exception.getMessage().contains("not friends"));
+    }
+
     @Test
     void testCreateUserWithDuplicateUsernameThrowsConflict() {
         // Setup
@@ -184,15 +260,109 @@ class UserServiceTest {
         assertEquals(2, relationshipPairs.size());
     }
 
+    @Test
+    void testGraphLayoutRunsAfterReadTransaction() {
+        user1.addFriend(user2);
+        when(userRepository.findAll()).thenReturn(Arrays.asList(user1, user2));
+
+        GraphResponse graph = userService.getGraphData(new UserSearchCriteria(), true);
+
+        InOrder order = inOrder(transactionManager, userRepository, graphLayoutService);
+        order.verify(transactionManager).getTransaction(argThat(definition -> definition.isReadOnly()));
+        order.verify(userRepository).findAll();
+        order.verify(transactionManager).commit(any());
+        order.verify(graphLayoutService).applyLayout(graph.getUsers(), graph.getRelationships(), false);
+    }
+
+    @Test
+    void testBatchGetKeepsRequestOrderAndReportsMissingIds() {
+        List<String> existing = new ArrayList<>();
+        for (int i = 0; i < UserLoader.CHUNK_SIZE + 10; i++) {
+            existing.add(UUID.randomUUID().toString());
+        }
+        when(userLoader.findAllById(anyCollection())).thenAnswer(invocation -> {
+            List<User> users = new ArrayList<>();
+            for (Object id : (Iterable<?>) invocation.getArgument(0)) {
+                if (existing.contains(id)) {
+                    users.add(User.builder().id((String) id).username("user-" + id).age(30)
+                            .hobbies(List.of("chess")).build());
+                }
+            }
+            // The database returns rows in no particular order
+            Collections.reverse(users);
+            return users;
+        });
+
+        String unknown = UUID.randomUUID().toString();
+        List<String> requested = new ArrayList<>(existing);
+        requested.add(3, unknown);
+        requested.add(existing.get(0));
+        requested.add("not-a-uuid");
+
+        BatchGetResponse response = userService.batchGetUsers(requested);
+
+        assertEquals(existing, response.getUsers().stream().map(UserDTO::getId).collect(Collectors.toList()));
+        assertEquals(List.of(unknown, "not-a-uuid"), response.getMissingIds());
+        // One lookup for 511 distinct valid ids, which the loader splits into IN-list queries
+        verify(userLoader).findAllById(anyCollection());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testMalformedIdIsNotFound() {
+        assertThrows(ResourceNotFoundException.class, () -> userService.getUserById("abc"));
+        assertThrows(ResourceNotFoundException.class,
+                () -> userService.updateUser("abc", new UpdateUserRequest("alice", 30, null)));
+        assertThrows(ResourceNotFoundException.class, () -> userService.deleteUser("abc"));
+        assertThrows(ResourceNotFoundException.class, () -> userService.deleteUser("abc", true));
+        assertThrows(ResourceNotFoundException.class, () -> userService.linkUsers(ID1, "abc"));
+        assertThrows(ResourceNotFoundException.class, () -> userService.unlinkUsers("abc", ID1));
+
+        // Nothing reaches the database, where the uuid cast would fail
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testNonCanonicalIdsAreCanonicalized() throws BadRequestException {
+        when(userRepository.existsById(anyString())).thenReturn(true);
+        when(userRepository.insertFriendship(ID1, ID2)).thenReturn(1);
+        when(userRepository.findById(ID1)).thenReturn(Optional.of(user1));
+
+        userService.linkUsers("0-0-0-0-1", "00000000-0000-0000-0000-000000000002");
+
+        verify(userRepository).insertFriendship(ID1, ID2);
+    }
+
+    @Test
+    void testBatchGetMatchesNonCanonicalIds() {
+        String mixedCase = "0000000A-0000-0000-0000-00000000000B";
+        String canonical = mixedCase.toLowerCase();
+        when(userLoader.findAllById(anyCollection())).thenAnswer(invocation -> {
+            List<Object> lookup = new ArrayList<>();
+            ((Iterable<?>) invocation.getArgument(0)).forEach(lookup::add);
+            // Only canonical ids reach the query, each once
+            assertEquals(List.of(canonical, ID1), lookup);
+            return List.of(user1, User.builder().id(canonical).username("dora").age(40)
+                    .hobbies(List.of()).build());
+        });
+
+        BatchGetResponse response = userService.batchGetUsers(
+                List.of(mixedCase, "0-0-0-0-1", canonical, "1-1-1-1-1-1"));
+
+        assertEquals(List.of(canonical, ID1),
+                response.getUsers().stream().map(UserDTO::getId).collect(Collectors.toList()));
+        assertEquals(List.of("1-1-1-1-1-1"), response.getMissingIds());
+    }
+
     @Test
     void testSelfFriendshipThrowsBadRequest() {
         // Setup
-        when(userRepository.findById("uuid-1")).thenReturn(Optional.of(user1));
+        when(userRepository.findById(ID1)).thenReturn(Optional.of(user1));
 
         // Execute & Verify
         BadRequestException exception = assertThrows(
                 BadRequestException.class,
-                () -> userService.linkUsers("uuid-1", "uuid-1")
+                () -> userService.linkUsers(ID1, ID1)
         );
 
         assertTrue(exception.getMessage().contains("cannot be friends with themselves"));
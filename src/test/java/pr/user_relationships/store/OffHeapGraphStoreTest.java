@@ -0,0 +1,251 @@
+package pr.user_relationships.store;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import pr.user_relationships.entity.User;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class OffHeapGraphStoreTest {
+
+    private static final String ALICE = "00000000-0000-0000-0000-000000000001";
+    private static final String BOB = "00000000-0000-0000-0000-000000000002";
+    private static final String CAROL = "00000000-0000-0000-0000-000000000003";
+    private static final String DAVE = "00000000-0000-0000-0000-000000000004";
+    private static final String ERIN = "00000000-0000-0000-0000-000000000005";
+
+    private OffHeapGraphStore store;
+    private User alice;
+    private User bob;
+    private User carol;
+    private User dave;
+
+    @BeforeEach
+    void setUp() {
+        alice = user(ALICE, "chess");
+        bob = user(BOB, "chess");
+        carol = user(CAROL, "hiking");
+        dave = user(DAVE, "chess", "hiking");
+        // alice, bob and carol form a triangle; dave only knows carol
+        alice.addFriend(bob);
+        bob.addFriend(carol);
+        carol.addFriend(alice);
+        carol.addFriend(dave);
+
+        store = store(new GraphStoreProperties());
+        store.rebuild(List.of(alice, bob, carol, dave));
+    }
+
+    @Test
+    void testReadsFromCompactGraph() {
+        assertEquals(Set.of(BOB, CAROL), Set.copyOf(store.friendIds(ALICE)));
+        assertEquals(Map.of(BOB, 1, CAROL, 1), store.mutualFriendCounts(ALICE));
+        assertEquals(List.of(new OffHeapGraphStore.FriendCandidate(DAVE, 1, 1)), store.suggestFriends(ALICE, 10));
+
+        assertTrue(store.friendIds("not-a-uuid").isEmpty());
+        assertTrue(store.suggestFriends(ERIN, 10).isEmpty());
+    }
+
+    @Test
+    void testChangesAreVisibleBeforeAndAfterCompaction() {
+        alice.addFriend(dave);
+        store.upsert(List.of(alice, dave));
+
+        assertChangedGraph();
+        store.compact();
+        assertChangedGraph();
+    }
+
+    @Test
+    void testNewAndRemovedUsers() {
+        User erin = user(ERIN, "chess");
+        dave.addFriend(erin);
+        store.upsert(List.of(erin, dave));
+
+        bob.removeFriend(alice);
+        bob.removeFriend(carol);
+        store.remove(List.of(BOB));
+        store.upsert(List.of(alice, carol));
+
+        assertNewAndRemovedUsers();
+        store.compact();
+        assertNewAndRemovedUsers();
+    }
+
+    @Test
+    void testFullLogTriggersCompaction() {
+        GraphStoreProperties properties = new GraphStoreProperties();
+        properties.setLogCapacity(16);
+        store = store(properties);
+        store.rebuild(List.of(alice, bob, carol, dave));
+
+        // Each batch needs most of the log, so nearly every upsert has to compact first
+        for (int i = 0; i < 5; i++) {
+            dave.removeFriend(carol);
+            store.upsert(List.of(dave, carol));
+            dave.addFriend(carol);
+            store.upsert(List.of(dave, carol));
+        }
+
+        assertEquals(List.of(CAROL), store.friendIds(DAVE));
+        assertEquals(Map.of(BOB, 1, CAROL, 1), store.mutualFriendCounts(ALICE));
+    }
+
+    @Test
+    void testSharedHobbiesBreakMutualFriendTies() {
+        User erin = user(ERIN, "hiking", "chess");
+        User frank = user("00000000-0000-0000-0000-000000000006", "golf");
+        dave.addFriend(erin);
+        dave.addFriend(frank);
+        carol.addFriend(erin);
+        carol.addFriend(frank);
+        store.upsert(List.of(carol, dave, erin, frank));
+
+        // dave, erin and frank each share only carol with bob; hobbies decide the order
+        List<OffHeapGraphStore.FriendCandidate> suggestions = store.suggestFriends(BOB, 10);
+        assertEquals(List.of(DAVE, ERIN, "00000000-0000-0000-0000-000000000006"),
+                suggestions.stream().map(OffHeapGraphStore.FriendCandidate::id).collect(Collectors.toList()));
+        assertEquals(1, suggestions.get(0).sharedHobbies());
+        assertEquals(0, suggestions.get(2).sharedHobbies());
+        assertEquals(1, store.suggestFriends(BOB, 1).size());
+    }
+
+    @Test
+    void testHobbyStorageGrowsWithHobbiesHeld() {
+        // Every user has hobbies nobody else has, plus one shared hobby
+        int size = 2000;
+        CompactGraph graph = CompactGraph.build(new CompactGraph.Source() {
+            public int size() {
+                return size;
+            }
+
+            public UUID idOf(int node) {
+                return new UUID(0, node + 1);
+            }
+
+            public int[] neighbors(int node) {
+                return new int[0];
+            }
+
+            public int[] hobbies(int node) {
+                return new int[]{0, 2 * node + 1, 2 * node + 2};
+            }
+        }, new DirectBuffers());
+
+        assertArrayEquals(new int[]{0, 2 * 1234 + 1, 2 * 1234 + 2}, graph.hobbies(1234));
+        // A bitset per hobby would take 4001 hobbies x 32 longs, about 1 MB
+        assertTrue(graph.offHeapBytes() < 128 * 1024, "off-heap bytes: " + graph.offHeapBytes());
+    }
+
+    @Test
+    void testGraphIsBuiltFromUnorderedRows() {
+        UUID a = new UUID(0, 1);
+        UUID b = new UUID(0, 2);
+        UUID c = new UUID(0, 3);
+        UUID unknown = new UUID(0, 9);
+        CompactGraph graph = CompactGraph.build(new CompactGraph.RowSource() {
+            public int size() {
+                return 3;
+            }
+
+            public void forEachId(Consumer<UUID> action) {
+                List.of(c, a, b).forEach(action);
+            }
+
+            public void forEachFriendship(BiConsumer<UUID, UUID> action) {
+                action.accept(c, a);
+                action.accept(a, b);
+                action.accept(b, unknown);
+                action.accept(c, b);
+            }
+
+            public void forEachHobby(ObjIntConsumer<UUID> action) {
+                action.accept(a, 5);
+                action.accept(a, 2);
+                action.accept(unknown, 1);
+                action.accept(c, 2);
+            }
+        }, new DirectBuffers());
+
+        assertEquals(3, graph.size());
+        assertEquals(3, graph.edgeCount());
+        assertEquals(-1, graph.indexOf(unknown));
+        int nodeA = graph.indexOf(a);
+        int nodeB = graph.indexOf(b);
+        int nodeC = graph.indexOf(c);
+        assertEquals(c, graph.idOf(nodeC));
+        assertArrayEquals(sorted(nodeB, nodeC), graph.neighbors(nodeA));
+        assertArrayEquals(sorted(nodeA, nodeB), graph.neighbors(nodeC));
+        assertArrayEquals(new int[]{2, 5}, graph.hobbies(nodeA));
+        assertArrayEquals(new int[0], graph.hobbies(nodeB));
+        assertArrayEquals(new int[]{2}, graph.hobbies(nodeC));
+    }
+
+    @Test
+    void testCompactionReusesBuffersOfReplacedGraphs() {
+        long allocated = 0;
+        for (int i = 0; i < 6; i++) {
+            if (i % 2 == 0) {
+                alice.addFriend(dave);
+            } else {
+                alice.removeFriend(dave);
+            }
+            store.upsert(List.of(alice, dave));
+            store.compact();
+            // The first compactions fill the pool, later ones only draw from it
+            if (i == 2) {
+                allocated = store.allocatedBytes();
+            }
+        }
+
+        assertEquals(allocated, store.allocatedBytes());
+        assertEquals(Set.of(BOB, CAROL), Set.copyOf(store.friendIds(ALICE)));
+    }
+
+    private void assertChangedGraph() {
+        assertEquals(Set.of(BOB, CAROL, DAVE), Set.copyOf(store.friendIds(ALICE)));
+        assertEquals(Map.of(BOB, 1, CAROL, 2, DAVE, 1), store.mutualFriendCounts(ALICE));
+        assertTrue(store.suggestFriends(ALICE, 10).isEmpty());
+        assertEquals(List.of(new OffHeapGraphStore.FriendCandidate(DAVE, 2, 1)), store.suggestFriends(BOB, 10));
+    }
+
+    private void assertNewAndRemovedUsers() {
+        assertFalse(store.contains(BOB));
+        assertTrue(store.contains(ERIN));
+        assertEquals(List.of(CAROL), store.friendIds(ALICE));
+        assertEquals(List.of(DAVE), store.friendIds(ERIN));
+        assertEquals(List.of(new OffHeapGraphStore.FriendCandidate(ERIN, 1, 0)), store.suggestFriends(CAROL, 10));
+    }
+
+    private static OffHeapGraphStore store(GraphStoreProperties properties) {
+        return new OffHeapGraphStore(properties, mock(DataSource.class), mock(PlatformTransactionManager.class));
+    }
+
+    private static int[] sorted(int... values) {
+        int[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private static User user(String id, String... hobbies) {
+        return User.builder()
+                .id(id)
+                .username(id)
+                .age(30)
+                .hobbies(Arrays.asList(hobbies))
+                .build();
+    }
+}